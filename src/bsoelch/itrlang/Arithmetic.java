@@ -0,0 +1,90 @@
+package bsoelch.itrlang;
+
+/**arithmetic operations on numbers dispatched on the kinds of both operands.
+ * Every operation has a table of kernels indexed by the NumberValue.kind() of the left and the right operand,
+ * the kernels for integers and fractions work on the operands directly instead of converting both to fractions*/
+final class Arithmetic {
+    private Arithmetic(){}
+
+    @FunctionalInterface
+    interface Kernel{
+        NumberValue apply(NumberValue a,NumberValue b);
+    }
+    @FunctionalInterface
+    interface ComparisonKernel{
+        int compare(NumberValue a,NumberValue b);
+    }
+
+    /**table using the given kernels for pairs of integers and fractions,
+     * all other pairs use real if both operands are real and complex otherwise*/
+    private static Kernel[][] table(Kernel intInt,Kernel intFraction,Kernel fractionInt,Kernel fractionFraction,
+                                    Kernel real,Kernel complex){
+        Kernel[][] table=new Kernel[NumberValue.KINDS][NumberValue.KINDS];
+        for(int a=0;a<NumberValue.KINDS;a++){
+            for(int b=0;b<NumberValue.KINDS;b++){
+                if(a<=NumberValue.FRACTION&&b<=NumberValue.FRACTION){
+                    table[a][b]=a==NumberValue.INT?(b==NumberValue.INT?intInt:intFraction):
+                            (b==NumberValue.INT?fractionInt:fractionFraction);
+                }else{
+                    table[a][b]=a<=NumberValue.REAL&&b<=NumberValue.REAL?real:complex;
+                }
+            }
+        }
+        return table;
+    }
+
+    static final Kernel[][] ADD=table(
+            (a,b)->Int.add((Int)a,(Int)b),
+            (a,b)->Fraction.add((Fraction)b,a.asInt()),
+            (a,b)->Fraction.add((Fraction)a,b.asInt()),
+            (a,b)->Fraction.add((Fraction)a,(Fraction)b),
+            (a,b)->new Real(a.asReal().add(b.asReal(),ItrLang.mathContext)),
+            (a,b)->Complex.add(a.asComplex(),b.asComplex(),ItrLang.mathContext));
+    static final Kernel[][] SUBTRACT=table(
+            (a,b)->Int.subtract((Int)a,(Int)b),
+            (a,b)->Fraction.subtract(a.asInt(),(Fraction)b),
+            (a,b)->Fraction.subtract((Fraction)a,b.asInt()),
+            (a,b)->Fraction.subtract((Fraction)a,(Fraction)b),
+            (a,b)->new Real(a.asReal().subtract(b.asReal(),ItrLang.mathContext)),
+            (a,b)->Complex.subtract(a.asComplex(),b.asComplex(),ItrLang.mathContext));
+    static final Kernel[][] MULTIPLY=table(
+            (a,b)->Int.multiply((Int)a,(Int)b),
+            (a,b)->Fraction.multiply((Fraction)b,a.asInt()),
+            (a,b)->Fraction.multiply((Fraction)a,b.asInt()),
+            (a,b)->Fraction.multiply((Fraction)a,(Fraction)b),
+            (a,b)->new Real(a.asReal().multiply(b.asReal(),ItrLang.mathContext)),
+            (a,b)->Complex.multiply(a.asComplex(),b.asComplex(),ItrLang.mathContext));
+    /**division with a rational result for rational operands, the divisor has to be non-zero*/
+    static final Kernel[][] REAL_DIVIDE=table(
+            (a,b)->new Fraction(a.asInt(),b.asInt()),
+            (a,b)->Fraction.divide(a.asInt(),(Fraction)b),
+            (a,b)->Fraction.divide((Fraction)a,b.asInt()),
+            (a,b)->Fraction.divide((Fraction)a,(Fraction)b),
+            (a,b)->new Real(a.asReal().divide(b.asReal(),ItrLang.mathContext)),
+            (a,b)->Complex.divide(a.asComplex(),b.asComplex(),ItrLang.mathContext));
+    /**division rounded to an integer, the divisor has to be non-zero*/
+    static final Kernel[][] INT_DIVIDE;
+    static{
+        Kernel rational=(a,b)->Int.valueOf(Fraction.floorDivide(a.asFraction(),b.asFraction()));
+        INT_DIVIDE=table(
+                (a,b)->Int.floorDivide((Int)a,(Int)b),
+                rational,rational,rational,
+                Real::floorDivide,
+                (a,b)->CMath.round(Complex.divide(a.asComplex(),b.asComplex(),ItrLang.mathContext),ItrLang.mathContext));
+    }
+
+    static final ComparisonKernel[][] COMPARE=new ComparisonKernel[NumberValue.KINDS][NumberValue.KINDS];
+    static{
+        for(int a=0;a<NumberValue.KINDS;a++){
+            for(int b=0;b<NumberValue.KINDS;b++){
+                COMPARE[a][b]=a<=NumberValue.REAL&&b<=NumberValue.REAL?
+                        Real::compare:
+                        (x,y)->Complex.compare(x.asComplex(),y.asComplex());
+            }
+        }
+        COMPARE[NumberValue.INT][NumberValue.INT]=(a,b)->Int.compare((Int)a,(Int)b);
+        COMPARE[NumberValue.INT][NumberValue.FRACTION]=(a,b)->-Fraction.compare((Fraction)b,a.asInt());
+        COMPARE[NumberValue.FRACTION][NumberValue.INT]=(a,b)->Fraction.compare((Fraction)a,b.asInt());
+        COMPARE[NumberValue.FRACTION][NumberValue.FRACTION]=(a,b)->Fraction.compare((Fraction)a,(Fraction)b);
+    }
+}
@@ -1,14 +1,19 @@
 package bsoelch.itrlang;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
+import java.math.RoundingMode;
 
 
 public class BigMath {
     static final int defaultPrecision =100;
+    /**precision from which on logarithms are computed with the arithmetic-geometric mean*/
+    static final int AGM_PRECISION=400;
 
     static final double LOG_10_2=Math.log10(2);
     static final double LOG10=Math.log(10);
+    static final double LN2=Math.log(2);
 
     static final BigDecimal ONE_HALF=BigDecimal.ONE.divide(BigDecimal.valueOf(2),MathContext.UNLIMITED);
     static final BigDecimal MINUS_ONE_HALF=ONE_HALF.negate();
@@ -44,95 +49,274 @@ public class BigMath {
         return simplify(cbrt,mc);
     }
 
-    /**e<sup>x</sup>*/
+    /**e<sup>x</sup>, computed as exp(x/2<sup>k</sup>)<sup>2<sup>k</sup></sup> with k chosen such that the series converges fast*/
     public static BigDecimal exp(BigDecimal x,MathContext mc) {
         if(mc.getPrecision()==0) {
             mc=new MathContext(defaultPrecision,mc.getRoundingMode());
         }
-        if(x.compareTo(BigDecimal.ZERO)<0) {
+        if(x.signum()<0) {
             return BigDecimal.ONE.divide(exp(x.negate(),mc),mc);
-        }else {
-            MathContext mc2=new MathContext(mc.getPrecision()+10,mc.getRoundingMode());
-            if(x.signum()==0) {//exp(0)=1
-                return BigDecimal.ONE;
-            }
-            BigDecimal exp=new BigDecimal(0,mc),z=BigDecimal.ONE,f=BigDecimal.ONE,m=BigDecimal.ONE,delta=BigDecimal.ONE,d0=x.abs(mc2).multiply(BigDecimal.TEN.pow(-(mc.getPrecision()+1), mc2),mc2);
-            while((delta.abs()).compareTo(d0)>0) {
-                exp=exp.add(delta=z.divide(f, mc2), mc2);
-                f=f.multiply(m,mc2);
-                m=m.add(BigDecimal.ONE, mc2);
-                z=z.multiply(x, mc2);
-            }
-            return simplify(exp,mc);
         }
+        if(x.signum()==0) {//exp(0)=1
+            return BigDecimal.ONE;
+        }
+        // halve the argument until it is below 2^-reduction, balances the number of squarings and terms of the series
+        int reduction=(int)Math.sqrt(mc.getPrecision()/LOG_10_2)/2;
+        // x<10^(precision-scale)
+        int k=Math.max(0,(int)Math.ceil((x.precision()-x.scale())/LOG_10_2)+reduction);
+        // every squaring doubles the relative error
+        MathContext mc2=new MathContext(mc.getPrecision()+10+(int)Math.ceil(k*LOG_10_2),mc.getRoundingMode());
+        BigDecimal exp=4*x.precision()<=mc.getPrecision()?expSplitting(x,k,mc2):expSeries(x,k,mc2);
+        for(int i=0;i<k;i++) {
+            exp=exp.multiply(exp,mc2);
+        }
+        return simplify(exp,mc);
+    }
+    /**exp(x/2<sup>k</sup>) summed in binary fixed point, the terms only need a division by a small integer*/
+    private static BigDecimal expSeries(BigDecimal x,int k,MathContext mc) {
+        int bits=(int)Math.ceil(mc.getPrecision()/LOG_10_2)+16;
+        BigInteger r=x.scale()>=0?x.unscaledValue().shiftLeft(bits).divide(BigInteger.TEN.pow(x.scale())):
+                x.unscaledValue().multiply(BigInteger.TEN.pow(-x.scale())).shiftLeft(bits);
+        r=r.shiftRight(k);
+        BigInteger term=BigInteger.ONE.shiftLeft(bits),sum=term;
+        for(long n=1;term.signum()!=0;n++) {
+            term=term.multiply(r).shiftRight(bits).divide(BigInteger.valueOf(n));
+            sum=sum.add(term);
+        }
+        // sum/2^bits = sum*5^bits/10^bits
+        return new BigDecimal(sum.multiply(BigInteger.valueOf(5).pow(bits)),bits).round(mc);
+    }
+    /**exp(x/2<sup>k</sup>) for x with few digits, the terms of the series are combined into a single fraction by binary splitting*/
+    private static BigDecimal expSplitting(BigDecimal x,int k,MathContext mc) {
+        // x/2^k=p/q
+        BigInteger p=x.scale()>=0?x.unscaledValue():x.unscaledValue().multiply(BigInteger.TEN.pow(-x.scale()));
+        BigInteger q=(x.scale()>=0?BigInteger.TEN.pow(x.scale()):BigInteger.ONE).shiftLeft(k);
+        // number of terms until the terms are below 10^-precision, log10(x/2^k) is bounded by precision-scale-k*log10(2)
+        double logR=x.precision()-x.scale()-k*LOG_10_2,logTerm=0;
+        int terms=0;
+        while(logTerm>-mc.getPrecision()) {
+            terms++;
+            logTerm+=logR-Math.log10(terms);
+        }
+        Split split=split(p,q,1,terms+1);
+        return new BigDecimal(split.t).divide(new BigDecimal(split.q),mc).add(BigDecimal.ONE,mc);
     }
-    /**natural logarithm of x*/
+    /**sum of (p/q)<sup>n-a+1</sup>*(a-1)!/n! for a<=n<b as fraction t/q, p is the product of the numerators*/
+    private record Split(BigInteger p,BigInteger q,BigInteger t){}
+    private static Split split(BigInteger p,BigInteger q,long a,long b) {
+        if(b-a==1) {
+            return new Split(p,q.multiply(BigInteger.valueOf(a)),p);
+        }
+        long m=(a+b)>>>1;
+        Split left=split(p,q,a,m),right=split(p,q,m,b);
+        return new Split(left.p.multiply(right.p),left.q.multiply(right.q),left.t.multiply(right.q).add(left.p.multiply(right.t)));
+    }
+    /**natural logarithm of x, uses the arithmetic-geometric mean for precisions of at least AGM_PRECISION digits
+     * and Newton's method on exp for lower precisions*/
     public static BigDecimal ln(BigDecimal x,MathContext mc) {
         if(mc.getPrecision()==0) {
             mc=new MathContext(defaultPrecision,mc.getRoundingMode());
         }
         if(x.signum()!=1) {throw new ArithmeticException("ln("+x+")");}
-        MathContext mc2=new MathContext(mc.getPrecision()+10,mc.getRoundingMode());
-        long approx2Log10 = Math.round(LOG10*(x.unscaledValue().bitLength() * LOG_10_2 - x.scale()));
-        BigDecimal ln=BigDecimal.valueOf(approx2Log10),delta=BigDecimal.ONE,d0=x.abs(mc2).multiply(BigDecimal.TEN.pow(-(mc.getPrecision()+1),mc2), mc2),exp;
-        while((delta.abs()).compareTo(d0)>0) {
-            exp = exp(ln,mc2);
-            delta=(exp.subtract(x, mc2)).divide(exp, mc2);
-            ln=ln.subtract(delta,mc2);
+        return mc.getPrecision()>=AGM_PRECISION?lnAgm(x,mc):lnNewton(x,mc);
+    }
+    /**number of leading digits that cancel out in ln(x) for x close to 1*/
+    private static int lnCancellation(BigDecimal x) {
+        BigDecimal distance=x.subtract(BigDecimal.ONE).abs();
+        return distance.signum()!=0&&distance.compareTo(ONE_HALF)<0?distance.scale()-distance.precision()+1:0;
+    }
+    private static BigDecimal lnNewton(BigDecimal x,MathContext mc) {
+        MathContext mc2=new MathContext(mc.getPrecision()+10+lnCancellation(x),mc.getRoundingMode());
+        // start with the double precision logarithm of the leading bits of x
+        int shift=Math.max(x.unscaledValue().bitLength()-62,0);
+        double approx=Math.log(x.unscaledValue().shiftRight(shift).doubleValue())+shift*LN2-x.scale()*LOG10;
+        // the corrections are absolute errors of ln, stop once they are below the last digit of the result
+        BigDecimal ln=new BigDecimal(approx),delta=BigDecimal.ONE,d0=BigDecimal.valueOf(Math.max(Math.abs(approx),1)).multiply(BigDecimal.TEN.pow(-(mc.getPrecision()+1),mc2), mc2),exp;
+        // every step doubles the number of correct digits, only the last steps need the full precision
+        MathContext step=new MathContext(15,mc.getRoundingMode());
+        while(step.getPrecision()<mc2.getPrecision()||(delta.abs()).compareTo(d0)>0) {
+            step=new MathContext(Math.min(2*step.getPrecision(),mc2.getPrecision()),mc.getRoundingMode());
+            exp = exp(ln,step);
+            delta=(exp.subtract(x, step)).divide(exp, step);
+            ln=ln.subtract(delta,step);
         }
         return simplify(ln,mc);
     }
 
-    /**sin(x)*/
+    /**ln(x) as pi/(2*agm(1,4/s))-m*ln(2) with s=x*2<sup>m</sup>, the error of the approximation is of order 1/s<sup>2</sup>*/
+    private static BigDecimal lnAgm(BigDecimal x,MathContext mc) {
+        if(x.compareTo(BigDecimal.ONE)==0) {//ln(1)=0
+            return BigDecimal.ZERO;
+        }
+        // ln(x) is the difference of two terms of size m*ln(2), add digits for the cancellation
+        int log2X=(int)Math.floor((x.unscaledValue().bitLength()-1)-x.scale()/LOG_10_2);
+        int extra=(int)Math.ceil(Math.log10(Math.abs(log2X)+mc.getPrecision()/LOG_10_2))+1+lnCancellation(x);
+        MathContext mc2=new MathContext(mc.getPrecision()+10+extra,mc.getRoundingMode());
+        int bits=(int)Math.ceil(mc2.getPrecision()/LOG_10_2);
+        int m=bits/2+2-log2X;
+        // agm(1,4/s)=4/s*agm(s/4,1) computed in binary fixed point, the fractional bits keep the full precision for the values close to 1
+        int fractionalBits=bits+16;
+        BigInteger scaled=x.scale()>=0?x.unscaledValue().shiftLeft(m-2+fractionalBits).divide(BigInteger.TEN.pow(x.scale())):
+                x.unscaledValue().multiply(BigInteger.TEN.pow(-x.scale())).shiftLeft(m-2+fractionalBits);
+        BigInteger agm=agm(scaled,BigInteger.ONE.shiftLeft(fractionalBits));
+        // pi/(2*agm(1,4/s))=pi*(s/4)/(2*agm(s/4,1))
+        BigDecimal ln=pi(mc2).multiply(new BigDecimal(scaled),mc2).divide(new BigDecimal(agm.shiftLeft(1)),mc2)
+                .subtract(ln2(mc2).multiply(BigDecimal.valueOf(m),mc2),mc2);
+        return simplify(ln,mc);
+    }
+    /**arithmetic-geometric mean of two numbers in fixed point representation,
+     * stops once the means only differ in the last bits*/
+    private static BigInteger agm(BigInteger a,BigInteger b) {
+        while(a.subtract(b).abs().bitLength()>2) {
+            BigInteger mean=a.add(b).shiftRight(1);
+            b=sqrt(a.multiply(b));
+            a=mean;
+        }
+        return a;
+    }
+    /**square root of n with an error of a few units, computed from the root of the leading half of the bits with one Newton step.
+     * Faster than BigInteger.sqrt for large numbers which uses Newton steps with full length divisions from the start*/
+    private static BigInteger sqrt(BigInteger n) {
+        if(n.bitLength()<=2048) {
+            return n.sqrt();
+        }
+        int k=n.bitLength()/4;
+        BigInteger root=sqrt(n.shiftRight(2*k)).shiftLeft(k);
+        return root.add(n.divide(root)).shiftRight(1);
+    }
+
+    /**pi and ln(2) with the highest precision they were computed with so far*/
+    private static BigDecimal pi,ln2;
+    private static int piPrecision,ln2Precision;
+    /**pi computed with the Gauss-Legendre algorithm*/
+    public static BigDecimal pi(MathContext mc) {
+        if(mc.getPrecision()==0) {
+            mc=new MathContext(defaultPrecision,mc.getRoundingMode());
+        }
+        if(piPrecision<mc.getPrecision()) {
+            MathContext mc2=new MathContext(mc.getPrecision()+10,mc.getRoundingMode());
+            BigDecimal eps=BigDecimal.ONE.movePointLeft(mc2.getPrecision()-2);
+            BigDecimal a=BigDecimal.ONE,b=ONE_HALF.sqrt(mc2),t=BigDecimal.valueOf(0.25),p=BigDecimal.ONE;
+            while(a.subtract(b).abs().compareTo(eps)>0) {
+                BigDecimal mean=a.add(b,mc2).multiply(ONE_HALF,mc2);
+                b=a.multiply(b,mc2).sqrt(mc2);
+                BigDecimal d=a.subtract(mean,mc2);
+                t=t.subtract(p.multiply(d.multiply(d,mc2),mc2),mc2);
+                p=p.add(p);
+                a=mean;
+            }
+            pi=a.add(b,mc2).pow(2,mc2).divide(t.multiply(BigDecimal.valueOf(4),mc2),mc2);
+            piPrecision=mc.getPrecision();
+        }
+        return pi.round(mc);
+    }
+    /**ln(2)=pi/(2*m*agm(1,4/2<sup>m</sup>))*/
+    static BigDecimal ln2(MathContext mc) {
+        if(ln2Precision<mc.getPrecision()) {
+            MathContext mc2=new MathContext(mc.getPrecision()+10,mc.getRoundingMode());
+            int bits=(int)Math.ceil(mc2.getPrecision()/LOG_10_2);
+            int m=bits/2+2,fractionalBits=bits+16;
+            BigInteger scaled=BigInteger.ONE.shiftLeft(m-2+fractionalBits);
+            BigInteger agm=agm(scaled,BigInteger.ONE.shiftLeft(fractionalBits));
+            ln2=pi(mc2).multiply(new BigDecimal(scaled),mc2).divide(new BigDecimal(agm.shiftLeft(1).multiply(BigInteger.valueOf(m))),mc2);
+            ln2Precision=mc.getPrecision();
+        }
+        return ln2.round(mc);
+    }
+
+    /**sin(x), x is reduced modulo pi/2 before the series is summed*/
     public static BigDecimal sin(BigDecimal x,MathContext mc) {
         if(mc.getPrecision()==0) {
             mc=new MathContext(defaultPrecision,mc.getRoundingMode());
         }
-        MathContext mc2=new MathContext(mc.getPrecision()+10,mc.getRoundingMode());
         if(x.signum()==0) {//sin(0)=0
             return BigDecimal.ZERO;
         }
-        BigDecimal sin=new BigDecimal(0,mc),z=x,f=BigDecimal.ONE,m=BigDecimal.valueOf(2),delta=BigDecimal.ONE,d0=x.abs(mc2).multiply(BigDecimal.TEN.pow(-(mc.getPrecision()+1), mc2),mc2);
-        boolean negate=false;
-        while((delta.abs()).compareTo(d0)>0) {
-            delta=z.divide(f, mc2);
-            if(negate) {delta=delta.negate();}
-            sin=sin.add(delta, mc2);
-            f=f.multiply(m,mc2);
-            m=m.add(BigDecimal.ONE, mc2);
-            f=f.multiply(m,mc2);
-            m=m.add(BigDecimal.ONE, mc2);
-            negate=!negate;
-            z=z.multiply(x,mc2).multiply(x,mc2);
-        }
-        return simplify(sin,mc);
+        MathContext mc2=new MathContext(mc.getPrecision()+10,mc.getRoundingMode());
+        Reduced r=reduce(x,mc2);
+        BigDecimal sin=r.quadrant%2==0?sinReduced(r.angle,mc2):cosReduced(r.angle,mc2);
+        return simplify(r.quadrant<2?sin:sin.negate(),mc);
     }
-    /**cos(x)*/
+    /**cos(x), x is reduced modulo pi/2 before the series is summed*/
     public static BigDecimal cos(BigDecimal x,MathContext mc) {
         if(mc.getPrecision()==0) {
             mc=new MathContext(defaultPrecision,mc.getRoundingMode());
         }
-        MathContext mc2=new MathContext(mc.getPrecision()+10,mc.getRoundingMode());
         if(x.signum()==0) {//cos(0)=1
             return BigDecimal.ONE;
         }
-        BigDecimal cos=new BigDecimal(0,mc),z=BigDecimal.ONE,f=BigDecimal.ONE,m=BigDecimal.ONE,delta=BigDecimal.ONE,d0=x.abs(mc2).multiply(BigDecimal.TEN.pow(-(mc.getPrecision()+1), mc2),mc2);
-        boolean negate=false;
-        while((delta.abs()).compareTo(d0)>0) {
-            delta=z.divide(f, mc2);
-            if(negate) {delta=delta.negate();}
-            cos=cos.add(delta, mc2);
-            f=f.multiply(m,mc2);
-            m=m.add(BigDecimal.ONE, mc2);
-            f=f.multiply(m,mc2);
-            m=m.add(BigDecimal.ONE, mc2);
-            negate=!negate;
-            z=z.multiply(x,mc2).multiply(x,mc2);
-        }
-        return simplify(cos,mc);
+        MathContext mc2=new MathContext(mc.getPrecision()+10,mc.getRoundingMode());
+        Reduced r=reduce(x,mc2);
+        BigDecimal cos=r.quadrant%2==0?cosReduced(r.angle,mc2):sinReduced(r.angle,mc2);
+        return simplify(r.quadrant==0||r.quadrant==3?cos:cos.negate(),mc);
     }
     public static BigDecimal tan(BigDecimal x,MathContext mc) {
-        return sin(x,mc).divide(cos(x,mc),mc);//TODO direct calculation
+        if(mc.getPrecision()==0) {
+            mc=new MathContext(defaultPrecision,mc.getRoundingMode());
+        }
+        if(x.signum()==0) {//tan(0)=0
+            return BigDecimal.ZERO;
+        }
+        MathContext mc2=new MathContext(mc.getPrecision()+10,mc.getRoundingMode());
+        Reduced r=reduce(x,mc2);
+        BigDecimal sin=sinReduced(r.angle,mc2),cos=sqrt(BigDecimal.ONE.subtract(sin.multiply(sin,mc2),mc2),mc2);
+        // tan(x+pi/2)=-cos(x)/sin(x)
+        return simplify(r.quadrant%2==0?sin.divide(cos,mc2):cos.divide(sin,mc2).negate(),mc);
+    }
+
+    /**angle=x-k*pi/2 with |angle|<=pi/4 and quadrant=k mod 4*/
+    private record Reduced(BigDecimal angle,int quadrant){}
+    private static Reduced reduce(BigDecimal x,MathContext mc) {
+        // the integer part of x/(pi/2) cancels out, as do the leading digits of angles close to a multiple of pi/2
+        int integerDigits=Math.max(x.precision()-x.scale(),0)+1,lost=0;
+        while(true) {
+            MathContext mc2=new MathContext(mc.getPrecision()+integerDigits+lost,mc.getRoundingMode());
+            BigDecimal halfPi=pi(mc2).multiply(ONE_HALF);
+            BigInteger k=x.divide(halfPi,new MathContext(integerDigits+2,mc.getRoundingMode())).setScale(0,RoundingMode.HALF_EVEN).toBigInteger();
+            if(k.signum()==0) {
+                return new Reduced(x,0);
+            }
+            BigDecimal angle=x.subtract(halfPi.multiply(new BigDecimal(k)),mc2);
+            int leadingZeros=angle.signum()==0?mc.getPrecision():angle.scale()-angle.precision();
+            if(leadingZeros<=lost) {
+                return new Reduced(angle.round(mc),k.mod(BigInteger.valueOf(4)).intValue());
+            }
+            lost=leadingZeros;
+        }
+    }
+    /**sin(x) for |x|<=pi/4, the series is summed for y=x/3<sup>t</sup> and sin(x) is computed with sin(3y)=sin(y)*(3-4*sin(y)<sup>2</sup>)*/
+    private static BigDecimal sinReduced(BigDecimal x,MathContext mc) {
+        int t=(int)Math.sqrt(mc.getPrecision())/2;
+        // every tripling may lose half a digit
+        MathContext mc2=new MathContext(mc.getPrecision()+t,mc.getRoundingMode());
+        BigDecimal sin=sinSeries(x.divide(BigDecimal.valueOf(3).pow(t),mc2),mc2);
+        BigDecimal three=BigDecimal.valueOf(3),four=BigDecimal.valueOf(4);
+        for(int i=0;i<t;i++) {
+            sin=sin.multiply(three.subtract(four.multiply(sin.multiply(sin,mc2),mc2),mc2),mc2);
+        }
+        return sin.round(mc);
+    }
+    /**cos(x)=sqrt(1-sin(x)<sup>2</sup>) for |x|<=pi/4*/
+    private static BigDecimal cosReduced(BigDecimal x,MathContext mc) {
+        BigDecimal sin=sinReduced(x,mc);
+        return sqrt(BigDecimal.ONE.subtract(sin.multiply(sin,mc),mc),mc);
+    }
+    /**taylor series of sin(x) summed in binary fixed point, the terms only need a division by a small integer*/
+    private static BigDecimal sinSeries(BigDecimal x,MathContext mc) {
+        if(x.signum()==0) {
+            return BigDecimal.ZERO;
+        }
+        // fractional bits for the precision relative to the magnitude of x
+        int bits=(int)Math.ceil((mc.getPrecision()+Math.max(x.scale()-x.precision(),0))/LOG_10_2)+16;
+        BigInteger y=x.scale()>=0?x.unscaledValue().shiftLeft(bits).divide(BigInteger.TEN.pow(x.scale())):
+                x.unscaledValue().multiply(BigInteger.TEN.pow(-x.scale())).shiftLeft(bits);
+        BigInteger ySq=y.multiply(y).shiftRight(bits),term=y,sum=y;
+        for(long n=1;term.signum()!=0;n++) {
+            term=term.multiply(ySq).shiftRight(bits).divide(BigInteger.valueOf(2*n*(2*n+1))).negate();
+            sum=sum.add(term);
+        }
+        // sum/2^bits = sum*5^bits/10^bits
+        return new BigDecimal(sum.multiply(BigInteger.valueOf(5).pow(bits)),bits).round(mc);
     }
 
     public static BigDecimal asin(BigDecimal x,MathContext mc) {
@@ -50,34 +50,38 @@ public class CMath {
                 new Complex(scale.multiply(BigMath.cos(z.imaginary(),mc),mc),scale.multiply(BigMath.sin(z.imaginary(),mc),mc)),
                 mc);
     }
-    /**natural logarithm of x*/
+    /**natural logarithm of x, the real part is the logarithm of |z| and the imaginary part the angle of z*/
     public static Complex ln(Complex z,MathContext mc) {
         if(mc.getPrecision()==0) {
             mc=new MathContext(BigMath.defaultPrecision,mc.getRoundingMode());
         }
-        BigDecimal r=Complex.abs(z,mc);
         MathContext mc2=new MathContext(mc.getPrecision()+10,mc.getRoundingMode());
-        long approx2Log10 = Math.round(BigMath.LOG10*(r.unscaledValue().bitLength() * BigMath.LOG_10_2 - r.scale()));
-        BigDecimal approxAngle;
-        if(z.imaginary().signum()==0){
-            approxAngle=z.real().signum()<0?BigDecimal.valueOf(Math.PI):BigDecimal.ZERO;
-        }else{
-            double angle=Math.atan2(z.imaginary().doubleValue(),z.real().doubleValue());
-            if(Double.isFinite(angle)){
-                approxAngle=BigDecimal.valueOf(angle);
-            }else{//TODO more precise angle approximation
-                approxAngle=BigDecimal.valueOf(z.imaginary().signum()*Math.PI/2);
-            }
+        // ln|z|=ln(|z|^2)/2, the square of the absolute value is exact
+        BigDecimal lnAbs=BigMath.ln(Complex.absSq(z),mc2).multiply(BigMath.ONE_HALF,mc2);
+        return simplify(new Complex(lnAbs,arg(z,mc2)),mc);
+    }
+    /**angle of z in (-pi,pi], computed with Newton's method starting at the angle of the double approximation of z*/
+    static BigDecimal arg(Complex z,MathContext mc) {
+        BigDecimal re=z.real(),im=z.imaginary();
+        if(im.signum()==0) {
+            return re.signum()<0?BigMath.pi(mc):BigDecimal.ZERO;
         }
-        Complex ln=new Complex(BigDecimal.valueOf(approx2Log10),approxAngle),
-                delta= Complex.ONE,exp;
-        BigDecimal d0=r.abs(mc2).multiply(BigDecimal.TEN.pow(-(mc.getPrecision()+1),mc2), mc2);
-        while((Complex.abs(delta,mc)).compareTo(d0)>0) {
-            exp = exp(ln,mc2);
-            delta=Complex.divide(Complex.subtract(exp,z,mc2),exp, mc2);
-            ln=Complex.subtract(ln,delta,mc2);
+        // scale both parts by the same power of ten to keep them in the range of doubles
+        int exponent=Math.max(re.precision()-re.scale(),im.precision()-im.scale());
+        BigDecimal angle=new BigDecimal(Math.atan2(im.movePointLeft(exponent).doubleValue(),re.movePointLeft(exponent).doubleValue())),
+                delta=BigDecimal.ONE;
+        // every step doubles the number of correct digits, only the last steps need the full precision
+        MathContext step=new MathContext(15,mc.getRoundingMode());
+        while(step.getPrecision()<mc.getPrecision()||delta.abs().compareTo(angle.abs().movePointLeft(mc.getPrecision()-2))>0) {
+            step=new MathContext(Math.min(2*step.getPrecision(),mc.getPrecision()),mc.getRoundingMode());
+            BigDecimal cos=BigMath.cos(angle,step),sin=BigMath.sin(angle,step);
+            // z*e^(-i*angle) is close to the positive real axis, its angle is the remaining correction
+            BigDecimal x=re.multiply(cos,step).add(im.multiply(sin,step),step);
+            BigDecimal y=im.multiply(cos,step).subtract(re.multiply(sin,step),step);
+            delta=y.divide(x,step);
+            angle=angle.add(delta,step);
         }
-        return simplify(ln,mc);
+        return angle;
     }
 
     /**sin(x)*/
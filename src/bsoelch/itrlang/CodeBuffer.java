@@ -0,0 +1,69 @@
+package bsoelch.itrlang;
+
+import java.util.Arrays;
+
+/**growable sequence of code-points backed by an int array,
+ * used for source code and parsed strings to avoid boxing every character.
+ * Sub-buffers share the array of the buffer they were created from until they are modified*/
+final class CodeBuffer {
+    private int[] data;
+    private int offset;
+    private int size;
+    /**true if data may be shared with other buffers*/
+    private boolean isShared;
+
+    CodeBuffer(){
+        this(new int[16],0,0,false);
+    }
+    private CodeBuffer(int[] data,int offset,int size,boolean isShared){
+        this.data=data;
+        this.offset=offset;
+        this.size=size;
+        this.isShared=isShared;
+    }
+    static CodeBuffer of(String str){
+        int[] codePoints=str.codePoints().toArray();
+        return new CodeBuffer(codePoints,0,codePoints.length,false);
+    }
+
+    int size(){
+        return size;
+    }
+    boolean isEmpty(){
+        return size==0;
+    }
+    int get(int i){
+        if(i<0||i>=size)
+            throw new IndexOutOfBoundsException("Index "+i+" out of bounds for length "+size);
+        return data[offset+i];
+    }
+    void add(int c){
+        if(isShared||offset+size==data.length){
+            data=Arrays.copyOfRange(data,offset,offset+Math.max(2*size,16));
+            offset=0;
+            isShared=false;
+        }
+        data[offset+size++]=c;
+    }
+    /**buffer containing the elements from (inclusive) to to (exclusive), shares the data with this buffer*/
+    CodeBuffer subList(int from,int to){
+        if(from<0||to>size||from>to)
+            throw new IndexOutOfBoundsException("Range ["+from+", "+to+") out of bounds for length "+size);
+        return new CodeBuffer(data,offset+from,to-from,true);
+    }
+    int[] toArray(){
+        return Arrays.copyOfRange(data,offset,offset+size);
+    }
+
+    @Override
+    public boolean equals(Object o){
+        return o instanceof CodeBuffer b&&Arrays.equals(data,offset,offset+size,b.data,b.offset,b.offset+b.size);
+    }
+    @Override
+    public int hashCode(){
+        int hash=1;
+        for(int i=offset;i<offset+size;i++)
+            hash=31*hash+data[i];
+        return hash;
+    }
+}
@@ -35,6 +35,10 @@ public record Complex(BigDecimal real, BigDecimal imaginary) implements NumberVa
         return real.signum() != 0||imaginary.signum()!=0;
     }
 
+    @Override
+    public int kind() {
+        return COMPLEX;
+    }
     @Override
     public boolean isInt() {
         return false;
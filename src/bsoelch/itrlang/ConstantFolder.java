@@ -0,0 +1,160 @@
+package bsoelch.itrlang;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**evaluates constant parts of a program at compile time.
+ * Maximal sequences of literals and pure operators that do not consume values from outside the sequence
+ * are replaced with a single FOLDED instruction pushing the precomputed values.
+ * Folded instructions are only valid as long as the operators they were computed with are not overwritten,
+ * once the check fails the original instruction is restored*/
+final class ConstantFolder {
+    /**operators that only depend on their arguments and may be evaluated at compile time*/
+    private static final int[] pureOperators=new int[]{
+            ' ', '\n', '\t', '\r', '"', '\'', '»',
+            'ä', 'á', 'à', 'â', 'å',
+            '+', '-', '·', '÷', ':', '%', 'd', '&', '|', 'x', '>', '=', '<', 'm', 'w', 'g',
+            '¬', '¿', 's', 'a', '~', 'c', '¯', 'º', '¹', 'L', 'B', 'e', 'n', 'l', 'r', '½', 'i', 'j', 'k', '²', '³',
+            '*', '/', '\\', '^', '¡', '°', '×', 'S', 'P'
+    };
+    /**operators whose result size grows with the value of their arguments,
+     * they are only evaluated if all numbers on the stack are at most MAX_FOLDED_ARGUMENT*/
+    private static final int[] expandingOperators=new int[]{'º', '¹', '×', '^', 'P', 'B'};
+    private static final BigDecimal MAX_FOLDED_ARGUMENT=BigDecimal.valueOf(1024);
+    /**maximum total number of elements in the folded values*/
+    private static final int MAX_FOLDED_SIZE=1024;
+    private static final int MAX_FOLDED_BITS=4096;
+
+    /**handler of FOLDED instructions*/
+    static int executeFolded(ItrLang itr,Program program,int ip){
+        if(!program.checkGuard(ip))
+            return ip;//execute original instruction
+        for(Value v:program.guard(ip).values)
+            itr.pushValue(Program.copy(v));
+        return program.next(ip);
+    }
+
+    /**interpreter state the operators are evaluated on, it has no input and fails on missing arguments*/
+    private final ItrLang context=new ItrLang((ItrLang.UTF8Input)null);
+    private final OperandStack stack=context.stack;
+
+    private ConstantFolder(){
+        context.requireArguments=true;
+    }
+
+    private static boolean isDigit(int op){
+        return op=='.'||(op>='0'&&op<='9');
+    }
+    private static boolean isFoldable(int op){
+        return isDigit(op)||ItrLang.contains(pureOperators,op);
+    }
+    /**total number of elements in v, -1 if v cannot be folded*/
+    private static int size(Value v){
+        if(v instanceof Int i)
+            return i.asInt().bitLength()<=MAX_FOLDED_BITS?1:-1;
+        if(v instanceof NumberValue)
+            return 1;
+        if(v instanceof Tuple t){
+            int size=1;
+            for(Value e:t){
+                int s=size(e);
+                if(s<0)
+                    return -1;
+                size+=s;
+            }
+            return size;
+        }
+        return -1;//sequences and matrices are not folded
+    }
+    private boolean hasSmallArguments(){
+        for(int i=0;i<stack.size();i++){
+            if(stack.get(i) instanceof NumberValue x){
+                if(!x.isReal()||x.asReal().abs().compareTo(MAX_FOLDED_ARGUMENT)>0)
+                    return false;
+            }
+        }
+        return true;
+    }
+    private boolean isSmall(){
+        int total=0;
+        for(int i=0;i<stack.size();i++){
+            int s=size(stack.get(i));
+            if(s<0)
+                return false;
+            total+=s;
+        }
+        return total<=MAX_FOLDED_SIZE;
+    }
+
+    /**replaces all foldable instruction sequences reachable from the start of program with FOLDED instructions*/
+    static void fold(Program program,OperatorTable builtins){
+        int count=0;
+        for(int ip=0;ip>=0&&ip<program.size();ip=program.next(ip))
+            count++;
+        int[] chain=new int[count];
+        count=0;
+        for(int ip=0;ip>=0&&ip<program.size();ip=program.next(ip))
+            chain[count++]=ip;
+        ConstantFolder folder=null;
+        int i=0;
+        while(i<chain.length){
+            int op=program.opcode(chain[i]);
+            // sequences cannot start within a number literal
+            if(!isFoldable(op)||(i>0&&isDigit(program.opcode(chain[i-1])))){
+                i++;
+                continue;
+            }
+            if(folder==null)
+                folder=new ConstantFolder();
+            int end=folder.evaluate(program,builtins,chain,i);
+            if(end>i+1||(end==i+1&&isDigit(op))){
+                int[] symbols=new int[end-i];
+                for(int k=i;k<end;k++)
+                    symbols[k-i]=program.opcode(chain[k]);
+                program.replaceGuarded(chain[i],Program.FOLDED,program.next(chain[end-1]),symbols,folder.result);
+                i=end;
+            }else{
+                i++;
+            }
+        }
+    }
+    /**values of the longest foldable sequence found by the last call of evaluate*/
+    private Value[] result;
+    /**evaluates the instructions starting at chain[start] as long as they are foldable
+     * @return the end (exclusive) of the longest foldable sequence in chain, the values of that sequence are stored in result*/
+    private int evaluate(Program program,OperatorTable builtins,int[] chain,int start){
+        stack.clear();
+        int end=start;
+        result=null;
+        try{
+            for(int i=start;i<chain.length;i++){
+                int op=program.opcode(chain[i]);
+                if(!isFoldable(op))
+                    break;
+                if(ItrLang.contains(expandingOperators,op)&&!hasSmallArguments())
+                    break;
+                Operator operator=builtins.get(op);
+                if(context.numberMode&&!(operator instanceof ItrLang.NumberLiteral))
+                    context.finishNumber();
+                operator.execute(context,program,chain[i]);
+                if(isDigit(op)){
+                    if(i+1<chain.length&&isDigit(program.opcode(chain[i+1])))
+                        continue;//sequence cannot end within a number literal
+                    context.finishNumber();
+                }
+                if(!isSmall())
+                    break;
+                end=i+1;
+                result=stack.toArray();
+            }
+        }catch(RuntimeException|IOException e){
+            // missing arguments or error in operator, keep the longest valid prefix
+        }catch(Error e){
+            if(e instanceof VirtualMachineError)
+                throw e;
+        }
+        context.numberMode=false;
+        context.fractionalDigits=-1;
+        return end;
+    }
+}
@@ -0,0 +1,246 @@
+package bsoelch.itrlang;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**factorization of integers into primes.
+ * Small prime factors are removed by trial division, the remaining cofactors are split with Brent's variant of Pollard's rho method
+ * until all factors pass a Miller-Rabin test. Cofactors that fit into a long are factored with Montgomery arithmetic on longs*/
+final class Factorization {
+    private Factorization(){}
+
+    /**trial division uses all primes below this limit*/
+    private static final int SMALL_PRIME_LIMIT=1<<12;
+    private static final int[] SMALL_PRIMES;
+    static{
+        boolean[] composite=new boolean[SMALL_PRIME_LIMIT];
+        int count=0;
+        for(int i=2;i<SMALL_PRIME_LIMIT;i++){
+            if(composite[i])
+                continue;
+            count++;
+            for(int j=i*i;j<SMALL_PRIME_LIMIT;j+=i)
+                composite[j]=true;
+        }
+        SMALL_PRIMES=new int[count];
+        for(int i=2,k=0;i<SMALL_PRIME_LIMIT;i++){
+            if(!composite[i])
+                SMALL_PRIMES[k++]=i;
+        }
+    }
+    /**number of Miller-Rabin rounds for numbers that do not fit into a long*/
+    private static final int CERTAINTY=64;
+    /**number of steps of the rho iteration between two gcd computations*/
+    private static final int BATCH_SIZE=128;
+
+    /**prime factors of n>0 with multiplicity in ascending order*/
+    static List<BigInteger> primeFactors(BigInteger n){
+        ArrayList<BigInteger> factors=new ArrayList<>();
+        for(int p:SMALL_PRIMES){
+            if(n.bitLength()<Long.SIZE)
+                break;
+            BigInteger prime=BigInteger.valueOf(p);
+            BigInteger[] qr=n.divideAndRemainder(prime);
+            while(qr[1].signum()==0){
+                factors.add(prime);
+                n=qr[0];
+                qr=n.divideAndRemainder(prime);
+            }
+        }
+        split(n,factors);
+        Collections.sort(factors);
+        return factors;
+    }
+    private static void split(BigInteger n,List<BigInteger> factors){
+        if(n.bitLength()<Long.SIZE){
+            factor(n.longValue(),factors);
+        }else if(n.isProbablePrime(CERTAINTY)){
+            factors.add(n);
+        }else{
+            BigInteger d=rho(n);
+            split(d,factors);
+            split(n.divide(d),factors);
+        }
+    }
+    /**non-trivial divisor of the composite number n*/
+    private static BigInteger rho(BigInteger n){
+        for(long c=1;;c++){
+            BigInteger increment=BigInteger.valueOf(c);
+            BigInteger x,y=BigInteger.TWO,saved=y,product=BigInteger.ONE,d;
+            int length=1;
+            // Brent's cycle detection: x is fixed while y moves length steps, the differences are multiplied to batch the gcd
+            do{
+                x=y;
+                for(int i=0;i<length;i++)
+                    y=y.multiply(y).add(increment).mod(n);
+                int k=0;
+                do{
+                    saved=y;
+                    int steps=Math.min(BATCH_SIZE,length-k);
+                    for(int i=0;i<steps;i++){
+                        y=y.multiply(y).add(increment).mod(n);
+                        product=product.multiply(x.subtract(y)).mod(n);
+                    }
+                    d=product.gcd(n);
+                    k+=steps;
+                }while(k<length&&d.equals(BigInteger.ONE));
+                length*=2;
+            }while(d.equals(BigInteger.ONE));
+            if(d.equals(n)){// the batch contains the divisor and zero, repeat its steps one by one
+                do{
+                    saved=saved.multiply(saved).add(increment).mod(n);
+                    d=x.subtract(saved).gcd(n);
+                }while(d.equals(BigInteger.ONE));
+            }
+            if(!d.equals(n))
+                return d;
+        }
+    }
+
+    /**adds the prime factors of n>0 to factors*/
+    private static void factor(long n,List<BigInteger> factors){
+        for(int p:SMALL_PRIMES){
+            if((long)p*p>n)
+                break;
+            while(n%p==0){
+                factors.add(BigInteger.valueOf(p));
+                n/=p;
+            }
+        }
+        if(n==1)
+            return;
+        if(n<(long)SMALL_PRIME_LIMIT*SMALL_PRIME_LIMIT){// no factor below the square root
+            factors.add(BigInteger.valueOf(n));
+            return;
+        }
+        splitLong(n,factors);
+    }
+    /**n is odd and has no factors below SMALL_PRIME_LIMIT*/
+    private static void splitLong(long n,List<BigInteger> factors){
+        Montgomery m=new Montgomery(n);
+        if(m.isPrime()){
+            factors.add(BigInteger.valueOf(n));
+            return;
+        }
+        long d=m.rho();
+        splitLong(d,factors);
+        splitLong(n/d,factors);
+    }
+    private static long gcd(long a,long b){
+        while(b!=0){
+            long t=a%b;
+            a=b;
+            b=t;
+        }
+        return a;
+    }
+
+    /**arithmetic modulo an odd number n<2<sup>63</sup> in Montgomery representation a*2<sup>64</sup> mod n,
+     * multiplications only need multiplications and shifts instead of divisions by n*/
+    private static final class Montgomery{
+        /**bases for which the Miller-Rabin test is deterministic for all numbers below 2<sup>64</sup>*/
+        private static final long[] BASES={2,3,5,7,11,13,17,19,23,29,31,37};
+
+        final long n;
+        /**-n<sup>-1</sup> mod 2<sup>64</sup>*/
+        final long nInv;
+        /**representations of 1 and -1*/
+        final long one,minusOne;
+        /**2<sup>128</sup> mod n, converts numbers into the Montgomery representation*/
+        final long r2;
+        Montgomery(long n){
+            this.n=n;
+            long inv=n;// correct in the lowest 3 bits, every Newton step doubles the number of correct bits
+            for(int i=0;i<5;i++)
+                inv*=2-n*inv;
+            nInv=-inv;
+            one=Long.remainderUnsigned(-n,n);
+            minusOne=n-one;
+            long x=one;
+            for(int i=0;i<Long.SIZE;i++){
+                x<<=1;
+                if(Long.compareUnsigned(x,n)>=0)
+                    x-=n;
+            }
+            r2=x;
+        }
+        /**hi*2<sup>64</sup>+lo divided by 2<sup>64</sup> modulo n, hi has to be less than n*/
+        long reduce(long hi,long lo){
+            long m=lo*nInv;
+            long t=hi+Math.multiplyHigh(m,n)+((m>>63)&n)+(lo!=0?1:0);
+            return Long.compareUnsigned(t,n)>=0?t-n:t;
+        }
+        long multiply(long a,long b){
+            return reduce(Math.multiplyHigh(a,b),a*b);
+        }
+        long toMontgomery(long a){
+            return multiply(a%n,r2);
+        }
+        long pow(long a,long e){
+            long res=one;
+            while(e!=0){
+                if((e&1)!=0)
+                    res=multiply(res,a);
+                a=multiply(a,a);
+                e>>>=1;
+            }
+            return res;
+        }
+
+        boolean isPrime(){
+            long d=n-1;
+            int s=Long.numberOfTrailingZeros(d);
+            d>>=s;
+            bases:for(long base:BASES){
+                long x=pow(toMontgomery(base),d);
+                if(x==one||x==minusOne)
+                    continue;
+                for(int i=1;i<s;i++){
+                    x=multiply(x,x);
+                    if(x==minusOne)
+                        continue bases;
+                }
+                return false;
+            }
+            return true;
+        }
+        /**non-trivial divisor of n if n is composite, same algorithm as the BigInteger version*/
+        long rho(){
+            for(long c=1;;c++){
+                long increment=toMontgomery(c),x,y=toMontgomery(2),saved=y,product=one,d;
+                int length=1;
+                do{
+                    x=y;
+                    for(int i=0;i<length;i++)
+                        y=add(multiply(y,y),increment);
+                    int k=0;
+                    do{
+                        saved=y;
+                        int steps=Math.min(BATCH_SIZE,length-k);
+                        for(int i=0;i<steps;i++){
+                            y=add(multiply(y,y),increment);
+                            product=multiply(product,x>y?x-y:y-x);
+                        }
+                        d=gcd(product,n);
+                        k+=steps;
+                    }while(k<length&&d==1);
+                    length*=2;
+                }while(d==1);
+                if(d==n){
+                    do{
+                        saved=add(multiply(saved,saved),increment);
+                        d=gcd(x>saved?x-saved:saved-x,n);
+                    }while(d==1);
+                }
+                if(d!=n)
+                    return d;
+            }
+        }
+        private long add(long a,long b){
+            long s=a+b;// both are less than 2^63
+            return Long.compareUnsigned(s,n)>=0?s-n:s;
+        }
+    }
+}
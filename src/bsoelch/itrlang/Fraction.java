@@ -3,46 +3,95 @@ package bsoelch.itrlang;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
-public record Fraction(BigInteger numerator, BigInteger denominator) implements NumberValue {
+/**rational number, the denominator is always positive.
+ * The results of arithmetic operations are not reduced immediately, the common factors are only removed
+ * once the fraction is printed, its numerator or denominator are requested or the denominator exceeds MAX_UNREDUCED_BITS*/
+public final class Fraction implements NumberValue {
+    /**maximum bit-length of the denominator of a fraction that is not reduced*/
+    private static final int MAX_UNREDUCED_BITS=256;
 
-    public Fraction {
+    private BigInteger numerator, denominator;
+    private boolean isReduced;
+
+    public Fraction(BigInteger numerator, BigInteger denominator) {
+        this(numerator, denominator, false);
+        reduce();
+    }
+    private Fraction(BigInteger numerator, BigInteger denominator, boolean isReduced) {
         if (denominator.signum() < 0) {
             numerator = numerator.negate();
             denominator = denominator.negate();
         }
+        this.numerator = numerator;
+        this.denominator = denominator;
+        this.isReduced = isReduced;
+    }
+    /**fraction numerator/denominator that is only reduced once it is needed*/
+    static Fraction unreduced(BigInteger numerator, BigInteger denominator) {
+        Fraction f = new Fraction(numerator, denominator, false);
+        if (f.denominator.bitLength() > MAX_UNREDUCED_BITS)
+            f.reduce();
+        return f;
+    }
+    private void reduce() {
+        if (isReduced)
+            return;
         BigInteger gcd = numerator.gcd(denominator);
-        if (gcd.signum() != 0) {
+        if (gcd.signum() != 0 && !gcd.equals(BigInteger.ONE)) {
             numerator = numerator.divide(gcd);
             denominator = denominator.divide(gcd);
         }
+        isReduced = true;
+    }
+
+    /**numerator of the reduced fraction*/
+    public BigInteger numerator() {
+        reduce();
+        return numerator;
+    }
+    /**denominator of the reduced fraction*/
+    public BigInteger denominator() {
+        reduce();
+        return denominator;
     }
 
+    /**exact value of a decimal number*/
+    static Fraction fromDecimal(BigDecimal value) {
+        if (value.scale() <= 0)
+            return new Fraction(value.toBigIntegerExact(), BigInteger.ONE);
+        return new Fraction(value.unscaledValue(), BigInteger.TEN.pow(value.scale()));
+    }
+    /**simplest fraction that is equal to value up to half a unit in the last digit at the working precision,
+     * decimals that have fewer digits than the working precision are converted exactly*/
     static Fraction fromFloat(BigDecimal value) {
-        boolean negate = false;
-        if (value.signum() < 0) {
-            negate = true;
-            value = value.negate();
+        if (value.scale() <= 0)
+            return fromDecimal(value);
+        return continuedFraction(value, value.precision() - ItrLang.mathContext.getPrecision());
+    }
+    /**evaluates the continued fraction expansion of the exact value u/10^scale of value
+     * until the error is at most half a unit of 10^(shift-scale)*/
+    private static Fraction continuedFraction(BigDecimal value, int shift) {
+        BigInteger u = value.unscaledValue().abs(), d = BigInteger.TEN.pow(value.scale());
+        BigInteger x = u, y = d;
+        BigInteger tolerance = BigInteger.TEN.pow(Math.abs(shift));
+        BigInteger h = BigInteger.ONE, k = BigInteger.ZERO, h1 = BigInteger.ZERO, k1 = BigInteger.ONE;// current and previous convergent
+        while (y.signum() != 0) {
+            BigInteger[] divMod = x.divideAndRemainder(y);
+            BigInteger nextK = divMod[0].multiply(k).add(k1);
+            BigInteger nextH = divMod[0].multiply(h).add(h1);
+            h1 = h;
+            k1 = k;
+            h = nextH;
+            k = nextK;
+            x = y;
+            y = divMod[1];
+            if (y.signum() != 0) {
+                BigInteger error = y.shiftLeft(1);// |u*k-h*d| is equal to the current remainder
+                if (shift >= 0 ? error.compareTo(k.multiply(tolerance)) <= 0 : error.multiply(tolerance).compareTo(k) <= 0)
+                    break;
+            }
         }
-        BigInteger intPart = value.toBigInteger(), num = BigInteger.ZERO, den = BigInteger.ONE,
-                num2 = BigInteger.ONE, den2 = BigInteger.ZERO;
-        BigDecimal eps = BigDecimal.valueOf(1, value.scale() + ItrLang.mathContext.getPrecision());//TODO correct version
-        value = value.remainder(BigDecimal.ONE, ItrLang.mathContext);//value between zero and one
-        BigDecimal delta = value, x;
-        boolean flipped = false;
-        do {//approximate float using continued fraction expansion
-            delta = BigDecimal.ONE.divide(delta, ItrLang.mathContext);
-            BigInteger C = delta.toBigInteger();
-            BigInteger num1 = num, den1 = den;
-            num = num.multiply(C).add(num2);
-            den = den.multiply(C).add(den2);
-            num2 = num1;
-            den2 = den1;
-            delta = delta.remainder(BigDecimal.ONE, ItrLang.mathContext);
-            x = value.subtract(new BigDecimal(num).divide(new BigDecimal(den), ItrLang.mathContext), ItrLang.mathContext).abs();
-            flipped = !flipped;
-        } while (x.compareTo(eps) > 0);
-        num = num.add(intPart.multiply(den));
-        return new Fraction(negate ? num.negate() : num, den);
+        return new Fraction(value.signum() < 0 ? h.negate() : h, k);
     }
 
     @Override
@@ -64,6 +113,7 @@ public record Fraction(BigInteger numerator, BigInteger denominator) implements
 
     @Override
     public BigDecimal asReal() {
+        reduce();// the numerator is rounded to the working precision, reduce it first to get the same result for equal values
         return new BigDecimal(numerator, ItrLang.mathContext).divide(new BigDecimal(denominator), ItrLang.mathContext);
     }
     @Override
@@ -71,6 +121,10 @@ public record Fraction(BigInteger numerator, BigInteger denominator) implements
         return numerator.signum() != 0;
     }
 
+    @Override
+    public int kind() {
+        return FRACTION;
+    }
     @Override
     public boolean isInt() {
         return false;
@@ -86,29 +140,61 @@ public record Fraction(BigInteger numerator, BigInteger denominator) implements
 
     @Override
     public String toString() {
+        reduce();
         return numerator.toString() + "/" + denominator.toString();
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Fraction f)) return false;
+        return numerator.multiply(f.denominator).equals(f.numerator.multiply(denominator));
+    }
+
+    @Override
+    public int hashCode() {
+        reduce();
+        return 31 * numerator.hashCode() + denominator.hashCode();
+    }
+
     static Fraction negate(Fraction a) {
-        return new Fraction(a.numerator.negate(), a.denominator);
+        return new Fraction(a.numerator.negate(), a.denominator, a.isReduced);
     }
 
     static Fraction add(Fraction a, Fraction b) {
-        return new Fraction(a.numerator.multiply(b.denominator).add(b.numerator.multiply(a.denominator)),
+        return unreduced(a.numerator.multiply(b.denominator).add(b.numerator.multiply(a.denominator)),
                 a.denominator.multiply(b.denominator));
     }
+    static Fraction add(Fraction a, BigInteger b) {
+        return unreduced(a.numerator.add(b.multiply(a.denominator)), a.denominator);
+    }
 
     static Fraction subtract(Fraction a, Fraction b) {
-        return new Fraction(a.numerator.multiply(b.denominator).subtract(b.numerator.multiply(a.denominator)),
+        return unreduced(a.numerator.multiply(b.denominator).subtract(b.numerator.multiply(a.denominator)),
                 a.denominator.multiply(b.denominator));
     }
+    static Fraction subtract(Fraction a, BigInteger b) {
+        return unreduced(a.numerator.subtract(b.multiply(a.denominator)), a.denominator);
+    }
+    static Fraction subtract(BigInteger a, Fraction b) {
+        return unreduced(a.multiply(b.denominator).subtract(b.numerator), b.denominator);
+    }
 
     static Fraction multiply(Fraction a, Fraction b) {
-        return new Fraction(a.numerator.multiply(b.numerator), a.denominator.multiply(b.denominator));
+        return unreduced(a.numerator.multiply(b.numerator), a.denominator.multiply(b.denominator));
+    }
+    static Fraction multiply(Fraction a, BigInteger b) {
+        return unreduced(a.numerator.multiply(b), a.denominator);
     }
 
     static Fraction divide(Fraction a, Fraction b) {
-        return new Fraction(a.numerator.multiply(b.denominator), a.denominator.multiply(b.numerator));
+        return unreduced(a.numerator.multiply(b.denominator), a.denominator.multiply(b.numerator));
+    }
+    static Fraction divide(Fraction a, BigInteger b) {
+        return unreduced(a.numerator, a.denominator.multiply(b));
+    }
+    static Fraction divide(BigInteger a, Fraction b) {
+        return unreduced(a.multiply(b.denominator), b.numerator);
     }
     // floor(a/b)
     static BigInteger floorDivide(BigInteger a, BigInteger b) {
@@ -127,4 +213,7 @@ public record Fraction(BigInteger numerator, BigInteger denominator) implements
     static int compare(Fraction a, Fraction b) {
         return a.numerator.multiply(b.denominator).compareTo(a.denominator.multiply(b.numerator));
     }
+    static int compare(Fraction a, BigInteger b) {
+        return a.numerator.compareTo(b.multiply(a.denominator));
+    }
 }
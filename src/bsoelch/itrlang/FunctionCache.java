@@ -0,0 +1,66 @@
+package bsoelch.itrlang;
+
+import java.math.MathContext;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+/**least recently used cache for the values of functions on numbers, keyed by function name, argument and precision.
+ * The capacity limits the approximate memory used by the cached arguments and results instead of the number of entries*/
+final class FunctionCache {
+    /**approximate memory used by an entry in addition to its argument and result*/
+    private static final long ENTRY_OVERHEAD=128;
+
+    private record Key(String name,NumberValue arg,MathContext mathContext){}
+    private record Entry(Value result,long size){}
+
+    private final LinkedHashMap<Key,Entry> entries=new LinkedHashMap<>(16,0.75f,true);
+    private final long capacity;
+    private long size;
+    private long hits,misses;
+
+    FunctionCache(long capacity){
+        this.capacity=capacity;
+    }
+
+    /**cached value of the function name at arg, calls compute if there is no cached value*/
+    Value get(String name,NumberValue arg,MathContext mathContext,Supplier<Value> compute){
+        Key key=new Key(name,arg,mathContext);
+        Entry entry=entries.get(key);
+        if(entry!=null){
+            hits++;
+            return entry.result;
+        }
+        misses++;
+        Value result=compute.get();
+        long entrySize=ENTRY_OVERHEAD+sizeOf(arg)+sizeOf(result);
+        if(entrySize>capacity)
+            return result;
+        entries.put(key,new Entry(result,entrySize));
+        size+=entrySize;
+        Iterator<Entry> eldest=entries.values().iterator();
+        while(size>capacity){
+            size-=eldest.next().size;
+            eldest.remove();
+        }
+        return result;
+    }
+
+    /**approximate memory used by a number*/
+    private static long sizeOf(Value v){
+        if(v instanceof Int i)
+            return i.isSmall()?16:32+i.asInt().bitLength()/8;
+        if(v instanceof Fraction f)
+            return 48+(f.numerator().bitLength()+f.denominator().bitLength())/8;
+        if(v instanceof Real r)
+            return 32+r.asReal().unscaledValue().bitLength()/8;
+        if(v instanceof Complex z)
+            return 16+sizeOf(new Real(z.real()))+sizeOf(new Real(z.imaginary()));
+        return 64;
+    }
+
+    @Override
+    public String toString(){
+        return hits+" hits, "+misses+" misses, "+entries.size()+" entries ("+size+" bytes)";
+    }
+}
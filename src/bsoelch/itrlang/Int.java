@@ -2,31 +2,119 @@ package bsoelch.itrlang;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.Objects;
 
-public record Int(BigInteger value) implements NumberValue {
-    public static final Int ZERO=new Int(BigInteger.ZERO);
-    public static final Int ONE=new Int(BigInteger.ONE);
+/**integer value, values that fit into a long are stored directly, only larger values are stored as BigInteger.
+ * Instances are created with valueOf, which returns shared instances for small values*/
+public final class Int implements NumberValue {
+    /**range of values that are cached, covers booleans, loop counters and most characters*/
+    private static final int CACHE_LOW=-1024,CACHE_HIGH=65535;
+    private static final Int[] cache=new Int[CACHE_HIGH-CACHE_LOW+1];
+    static{
+        for(int i=0;i<cache.length;i++)
+            cache[i]=new Int(CACHE_LOW+i);
+    }
+    public static final Int ZERO=valueOf(0);
+    public static final Int ONE=valueOf(1);
+
+    /**value of this integer if big is null*/
+    private final long small;
+    /**value of this integer if it does not fit into a long, null otherwise*/
+    private final BigInteger big;
+
+    /**integer that does not fit into a long*/
+    private Int(BigInteger value){
+        small=0;
+        big=value;
+    }
+    private Int(long value){
+        small=value;
+        big=null;
+    }
+    public static Int valueOf(long value){
+        if(value>=CACHE_LOW&&value<=CACHE_HIGH)
+            return cache[(int)value-CACHE_LOW];
+        return new Int(value);
+    }
+    public static Int valueOf(BigInteger value){
+        return value.bitLength()<Long.SIZE?valueOf(value.longValue()):new Int(value);
+    }
+
+    /**true if the value of this integer fits into a long*/
+    boolean isSmall(){
+        return big==null;
+    }
+    /**value of this integer, only valid if isSmall() is true*/
+    long longValue(){
+        return small;
+    }
+
+    static Int add(Int a,Int b){
+        if(a.big==null&&b.big==null){
+            try{
+                return valueOf(Math.addExact(a.small,b.small));
+            }catch(ArithmeticException overflow){/*fall through*/}
+        }
+        return valueOf(a.asInt().add(b.asInt()));
+    }
+    static Int subtract(Int a,Int b){
+        if(a.big==null&&b.big==null){
+            try{
+                return valueOf(Math.subtractExact(a.small,b.small));
+            }catch(ArithmeticException overflow){/*fall through*/}
+        }
+        return valueOf(a.asInt().subtract(b.asInt()));
+    }
+    static Int multiply(Int a,Int b){
+        if(a.big==null&&b.big==null){
+            try{
+                return valueOf(Math.multiplyExact(a.small,b.small));
+            }catch(ArithmeticException overflow){/*fall through*/}
+        }
+        return valueOf(a.asInt().multiply(b.asInt()));
+    }
+    static Int negate(Int a){
+        if(a.big==null&&a.small!=Long.MIN_VALUE)
+            return valueOf(-a.small);
+        return valueOf(a.asInt().negate());
+    }
+    /**quotient of a and b with the same rounding as Fraction.floorDivide, b has to be non-zero*/
+    static Int floorDivide(Int a,Int b){
+        if(a.big==null&&b.big==null&&!(a.small==Long.MIN_VALUE&&b.small==-1)){
+            long q=a.small/b.small;
+            return valueOf(a.small<0&&q*b.small!=a.small?q-1:q);
+        }
+        return valueOf(Fraction.floorDivide(a.asInt(),b.asInt()));
+    }
+    static int compare(Int a,Int b){
+        if(a.big==null&&b.big==null)
+            return Long.compare(a.small,b.small);
+        return a.asInt().compareTo(b.asInt());
+    }
+
     @Override
     public BigInteger asInt() {
-        return value;
+        return big!=null?big:BigInteger.valueOf(small);
     }
 
     @Override
     public Fraction asFraction() {
-        return new Fraction(value, BigInteger.ONE);
+        return new Fraction(asInt(), BigInteger.ONE);
     }
 
     @Override
     public BigDecimal asReal() {
-        return new BigDecimal(value);
+        return big!=null?new BigDecimal(big):BigDecimal.valueOf(small);
     }
 
     @Override
     public boolean asBool() {
-        return value.signum() != 0;
+        return big!=null||small!=0;
     }
 
+    @Override
+    public int kind() {
+        return INT;
+    }
     @Override
     public boolean isInt() {
         return true;
@@ -42,18 +130,18 @@ public record Int(BigInteger value) implements NumberValue {
 
     @Override
     public String toString() {
-        return value.toString();
+        return big!=null?big.toString():Long.toString(small);
     }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Int anInt)) return false;
-        return value.equals(anInt.value);
+        return small==anInt.small&&(big==null?anInt.big==null:big.equals(anInt.big));
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return big!=null?big.hashCode():Long.hashCode(small);
     }
 }
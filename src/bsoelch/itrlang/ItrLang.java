@@ -11,23 +11,63 @@ import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 public class ItrLang {
     static MathContext mathContext = new MathContext(BigMath.defaultPrecision, RoundingMode.HALF_EVEN);
-    /**inverse of logarithm of 2, needed for binary logarithm*/
-    static BigDecimal LOG2INV;
-    static BigDecimal LOG10INV;
-    static BigDecimal PI;
 
+    /**constants needed by number operations, each constant is computed the first time it is used
+     * with two more digits than the precision the constants were created for*/
+    private static final class Constants{
+        final MathContext extended;
+        /**inverse of logarithm of 2, needed for binary logarithm*/
+        private BigDecimal log2Inv;
+        private BigDecimal log10Inv;
+        private BigDecimal pi;
+
+        Constants(MathContext mc){
+            extended=new MathContext(mc.getPrecision()+2, mc.getRoundingMode());
+        }
+        BigDecimal log2Inv(){
+            if(log2Inv==null)
+                log2Inv=BigDecimal.ONE.divide(BigMath.ln(BigDecimal.valueOf(2),extended),extended);
+            return log2Inv;
+        }
+        BigDecimal log10Inv(){
+            if(log10Inv==null)
+                log10Inv=BigDecimal.ONE.divide(BigMath.ln(BigDecimal.valueOf(10),extended),extended);
+            return log10Inv;
+        }
+        BigDecimal pi(){
+            if(pi==null)
+                pi=BigMath.pi(extended);
+            return pi;
+        }
+    }
+    /**constants for every precision that was used so far*/
+    private static final HashMap<MathContext,Constants> constantCache=new HashMap<>();
+    /**constants for the current value of mathContext*/
+    private static Constants constants=new Constants(mathContext);
     static{
-        recomputeConstants();
+        constantCache.put(mathContext,constants);
+    }
+    /**sets the number of significant digits of real and complex numbers*/
+    static void setPrecision(int digits){
+        mathContext=new MathContext(digits,mathContext.getRoundingMode());
+        constants=constantCache.computeIfAbsent(mathContext,Constants::new);
+    }
+    /**inverse of the natural logarithm of 2 with the precision of mathContext plus two digits*/
+    static BigDecimal log2Inv(){
+        return constants.log2Inv();
+    }
+    /**inverse of the natural logarithm of 10 with the precision of mathContext plus two digits*/
+    static BigDecimal log10Inv(){
+        return constants.log10Inv();
     }
-    static void recomputeConstants(){
-        MathContext extended=new MathContext(mathContext.getPrecision()+2, mathContext.getRoundingMode());
-        LOG2INV=BigDecimal.ONE.divide(BigMath.ln(BigDecimal.valueOf(2),extended),extended);
-        LOG10INV=BigDecimal.ONE.divide(BigMath.ln(BigDecimal.valueOf(10),extended),extended);
-        PI=CMath.ln(new Complex(BigDecimal.valueOf(-1),BigDecimal.ZERO),extended).imaginary();
+    /**pi with the precision of mathContext plus two digits*/
+    static BigDecimal pi(){
+        return constants.pi();
     }
 
     static Value unaryNumberOp(Value a,  Function<NumberValue,Value> f){
@@ -43,8 +83,8 @@ public class ItrLang {
         throw new IllegalArgumentException("unsupported operands of binary number operation: "+a.getClass().getName()+"   "+a.getClass().getName());
     }
     static NumberValue negateNumber(NumberValue a){
-        if(a instanceof Int)
-            return new Int(a.asInt().negate());
+        if(a instanceof Int i)
+            return Int.negate(i);
         if(a instanceof Fraction)
             return Fraction.negate(a.asFraction());
         if(a instanceof Real)
@@ -146,41 +186,17 @@ public class ItrLang {
         throw new IllegalArgumentException("unsupported operands of binary number operation: "+a.getClass().getName()+"   "+a.getClass().getName());
     }
     static NumberValue addNumbers(NumberValue a,NumberValue b){
-        if(a instanceof Int&&b instanceof Int)
-            return new Int(a.asInt().add(b.asInt()));
-        if(a.isRational()&&b.isRational())
-            return Fraction.add(a.asFraction(),b.asFraction());
-        if(a.isReal()&&b.isReal())
-            return new Real(a.asReal().add(b.asReal(),mathContext));
-        if(a.isNumber()&&b.isNumber())
-            return Complex.add(a.asComplex(),b.asComplex(),mathContext);
-        throw new IllegalArgumentException("unsupported operands of addition: "+a.getClass().getName()+"   "+a.getClass().getName());
+        return Arithmetic.ADD[a.kind()][b.kind()].apply(a,b);
     }
     static Value add(Value a,Value b){
         return binaryNumberOp(a,false,b,false,ItrLang::addNumbers);
     }
     static NumberValue subtractNumbers(NumberValue a,NumberValue b){
-        if(a instanceof Int&&b instanceof Int)
-            return new Int(a.asInt().subtract(b.asInt()));
-        if(a.isRational()&&b.isRational())
-            return Fraction.subtract(a.asFraction(),b.asFraction());
-        if(a.isReal()&&b.isReal())
-            return new Real(a.asReal().subtract(b.asReal(),mathContext));
-        if(a.isNumber()&&b.isNumber())
-            return Complex.subtract(a.asComplex(),b.asComplex(),mathContext);
-        throw new IllegalArgumentException("unsupported operands of subtraction: "+a.getClass().getName()+"   "+a.getClass().getName());
+        return Arithmetic.SUBTRACT[a.kind()][b.kind()].apply(a,b);
     }
 
     static NumberValue multiplyNumbers(NumberValue a,NumberValue b){
-        if(a instanceof Int&&b instanceof Int)
-            return new Int(a.asInt().multiply(b.asInt()));
-        if(a.isRational()&&b.isRational())
-            return Fraction.multiply(a.asFraction(),b.asFraction());
-        if(a.isReal()&&b.isReal())
-            return new Real(a.asReal().multiply(b.asReal(),mathContext));
-        if(a.isNumber()&&b.isNumber())
-            return Complex.multiply(a.asComplex(),b.asComplex(),mathContext);
-        throw new IllegalArgumentException("unsupported operands of multiplication: "+a.getClass().getName()+"   "+a.getClass().getName());
+        return Arithmetic.MULTIPLY[a.kind()][b.kind()].apply(a,b);
     }
 
     static Value binaryMatrixOp(Value a,boolean lTruncate,Value b,boolean rTruncate,BiFunction<Matrix,Matrix,Value> fM,BiFunction<NumberValue,NumberValue,Value> fN){
@@ -236,28 +252,12 @@ public class ItrLang {
     static NumberValue realDivide(NumberValue a,NumberValue b){
         if(!b.asBool())
             return Int.ZERO;//addLater? return zero of same type as a
-        if(a instanceof Int&&b instanceof Int)
-            return new Fraction(a.asInt(),b.asInt());
-        if(a.isRational()&&b.isRational())
-            return Fraction.divide(a.asFraction(),b.asFraction());
-        if(a.isReal()&&b.isReal())
-            return new Real(a.asReal().divide(b.asReal(),mathContext));
-        if(a.isNumber()&&b.isNumber())
-            return Complex.divide(a.asComplex(),b.asComplex(),mathContext);
-        throw new IllegalArgumentException("unsupported operands of division: "+a.getClass().getName()+"   "+a.getClass().getName());
+        return Arithmetic.REAL_DIVIDE[a.kind()][b.kind()].apply(a,b);
     }
     static NumberValue intDivide(NumberValue a,NumberValue b){
         if(!b.asBool())
             return Int.ZERO;
-        if(a instanceof Int&&b instanceof Int)
-            return new Int(Fraction.floorDivide(a.asInt(),b.asInt()));
-        if(a.isRational()&&b.isRational())
-            return new Int(Fraction.floorDivide(a.asFraction(),b.asFraction()));
-        if(a.isReal()&&b.isReal())
-            return new Int(BigMath.floor(a.asReal().divide(b.asReal(),mathContext),mathContext).toBigInteger());
-        if(a.isNumber()&&b.isNumber())
-            return CMath.round(Complex.divide(a.asComplex(),b.asComplex(),mathContext),mathContext);
-        throw new IllegalArgumentException("unsupported operands of division: "+a.getClass().getName()+"   "+a.getClass().getName());
+        return Arithmetic.INT_DIVIDE[a.kind()][b.kind()].apply(a,b);
     }
     static NumberValue remainder(NumberValue a,NumberValue b){
         if(!b.asBool())
@@ -271,7 +271,7 @@ public class ItrLang {
     @SuppressWarnings("SuspiciousNameCombination")
     static NumberValue gcd(NumberValue a, NumberValue b){
         if(a.isReal()&&b.isReal())
-            return new Int(a.asInt().gcd(b.asInt()));
+            return Int.valueOf(a.asInt().gcd(b.asInt()));
         if(a.isReal()&&b.isReal()){
             Complex x=CMath.round(a.asComplex(),mathContext)
                     ,y=CMath.round(b.asComplex(),mathContext);
@@ -301,7 +301,7 @@ public class ItrLang {
                 return invert(pow(a,negate(b)));
             }
             if(a.isInt()){
-                return new Int(((NumberValue)a).asInt().pow(e.intValueExact()));
+                return Int.valueOf(((NumberValue)a).asInt().pow(e.intValueExact()));
             }
             Value res=Int.ONE,p=a;
             while(e.signum()!=0){
@@ -336,7 +336,7 @@ public class ItrLang {
         BigInteger exponent=p_.divide(BigInteger.TWO);
         for(BigInteger k=BigInteger.TWO;k.compareTo(p)<0;k=k.add(BigInteger.ONE)){
             if(k.modPow(exponent,p).compareTo(p_)==0)//addLater? support for large factors
-                return (Complex)gcd(new Complex(new BigDecimal(k.pow(exponent.divide(BigInteger.TWO).intValueExact())),BigDecimal.ONE),new Int(p));
+                return (Complex)gcd(new Complex(new BigDecimal(k.pow(exponent.divide(BigInteger.TWO).intValueExact())),BigDecimal.ONE),Int.valueOf(p));
         }
         throw new IllegalArgumentException(p.toString());
     }
@@ -346,24 +346,9 @@ public class ItrLang {
             //addLater? factor fractions
             if(a.signum()==0)
                 return new Tuple(Int.ZERO);
-            a=a.abs();
             Tuple res=new Tuple();
-            Int f=new Int(BigInteger.TWO);
-            while(a.mod(BigInteger.TWO).signum()==0){
-                a=a.divide(BigInteger.TWO);
-                res.push(f);
-            }
-            for(BigInteger f0=BigInteger.valueOf(3);f0.multiply(f0).compareTo(a)<=0;f0=f0.add(BigInteger.TWO)){
-                if(a.mod(f0).signum()==0){
-                    f=new Int(f0);
-                    do{
-                        a=a.divide(f0);
-                        res.push(f);
-                    }while(a.mod(f0).signum()==0);
-                }
-            }
-            if(a.compareTo(BigInteger.ONE)!=0)
-                res.push(new Int(a));
+            for(BigInteger p:Factorization.primeFactors(a.abs()))
+                res.push(Int.valueOf(p));
             return res;
         }
         if(x.isNumber()){
@@ -373,36 +358,26 @@ public class ItrLang {
                 return new Tuple(a);
             BigInteger n=Complex.absSq(a).toBigInteger();
             Tuple res=new Tuple();
-            NumberValue p=new Complex(BigDecimal.ONE,BigDecimal.ONE);
-            while(n.remainder(BigInteger.TWO).signum()==0){
-                n=n.divide(BigInteger.TWO);
-                res.push(p);
-            }
-            for(BigInteger f=BigInteger.valueOf(3);f.multiply(f).compareTo(n)<=0;f=f.add(BigInteger.TWO)){
-                if(f.mod(BigInteger.valueOf(4)).compareTo(BigInteger.ONE)==0){
-                    if(n.mod(f).signum()==0) {
-                        p = gaussianFactorHelper(f);
-                        do{
-                            n = n.divide(f);
-                            res.push(p);
-                        }while (n.mod(f).signum() == 0);
-                    }
-                }else{
-                    if(n.mod(f).signum()==0) {
-                        p = new Int(f);
-                        BigInteger f2=f.multiply(f);
-                        do{
-                            n = n.divide(f2);
-                            res.push(p);
-                        }while (n.mod(f).signum() == 0);
-                    }
-                }
-            }
-            if(n.compareTo(BigInteger.ONE)!=0){
-                if(n.mod(BigInteger.valueOf(4)).compareTo(BigInteger.ONE)==0){
-                    res.push(gaussianFactorHelper(n));
-                }else{
-                    throw new UnsupportedOperationException("unexpected value for norm");
+            List<BigInteger> primes=Factorization.primeFactors(n);
+            for(int i=0;i<primes.size();){
+                BigInteger f=primes.get(i);
+                int count=1;
+                while(i+count<primes.size()&&primes.get(i+count).equals(f))
+                    count++;
+                i+=count;
+                if(f.equals(BigInteger.TWO)){
+                    for(int k=0;k<count;k++)
+                        res.push(new Complex(BigDecimal.ONE,BigDecimal.ONE));
+                }else if(f.mod(BigInteger.valueOf(4)).compareTo(BigInteger.ONE)==0){
+                    NumberValue p=gaussianFactorHelper(f);
+                    for(int k=0;k<count;k++)
+                        res.push(p);
+                }else{// primes of the form 4k+3 are gaussian primes, their square divides the norm
+                    if(count%2!=0)
+                        throw new UnsupportedOperationException("unexpected value for norm");
+                    NumberValue p=Int.valueOf(f);
+                    for(int k=0;k<count/2;k++)
+                        res.push(p);
                 }
             }
             return res;
@@ -413,36 +388,42 @@ public class ItrLang {
     }
 
     static int compareNumbers(NumberValue a,NumberValue b){
-        if(a instanceof Int&&b instanceof Int)
-            return a.asInt().compareTo(b.asInt());
-        if(a.isRational()&&b.isRational())
-            return Fraction.compare(a.asFraction(),b.asFraction());
-        if(a.isReal()&&b.isReal())
-            return a.asReal().compareTo(b.asReal());
-        if(a.isNumber()&&b.isNumber())
-            return Complex.compare(a.asComplex(),b.asComplex());
-        throw new IllegalArgumentException("unsupported operands for comparison: "+a.getClass().getName()+"   "+a.getClass().getName());
+        return Arithmetic.COMPARE[a.kind()][b.kind()].compare(a,b);
     }
 
     static NumberValue andNumbers(NumberValue a,NumberValue b){//addLater? apply logical operations to real and imaginary part separately
         if(a.isNumber()&&b.isNumber())
-            return new Int(a.asInt().and(b.asInt()));
+            return Int.valueOf(a.asInt().and(b.asInt()));
         throw new IllegalArgumentException("unsupported operands for boolean operation: "+a.getClass().getName()+"   "+a.getClass().getName());
     }
     static NumberValue orNumbers(NumberValue a,NumberValue b){
         if(a.isNumber()&&b.isNumber())
-            return new Int(a.asInt().or(b.asInt()));
+            return Int.valueOf(a.asInt().or(b.asInt()));
         throw new IllegalArgumentException("unsupported operands for boolean operation: "+a.getClass().getName()+"   "+a.getClass().getName());
     }
     static NumberValue xorNumbers(NumberValue a,NumberValue b){
         if(a.isNumber()&&b.isNumber())
-            return new Int(a.asInt().xor(b.asInt()));
+            return Int.valueOf(a.asInt().xor(b.asInt()));
         throw new IllegalArgumentException("unsupported operands for boolean operation: "+a.getClass().getName()+"   "+a.getClass().getName());
     }
 
+    /**values of functions computed by applyFunction*/
+    static final FunctionCache functionCache=new FunctionCache(1<<22);
     static Value applyFunction(Value arg,String name){
-        if(arg.isReal()){
+        if(arg.isNumber()){
             NumberValue x=(NumberValue)arg;
+            return switch (name) {
+                case "floor","round","ceil" -> evaluateFunction(x,name);// cheaper than a lookup
+                default -> functionCache.get(name,x,mathContext,()->evaluateFunction(x,name));
+            };
+        }
+        if(arg instanceof Sequence){
+            return MappedSequence.from((Sequence) arg,value -> applyFunction(value, name));
+        }
+        throw new UnsupportedOperationException("unsupported value type: "+arg.getClass().getName());
+    }
+    private static Value evaluateFunction(NumberValue x,String name){
+        if(x.isReal()){
             switch (name) {
                 case "floor" -> { return new Real(BigMath.floor(x.asReal(),mathContext)); }
                 case "round" -> { return new Real(BigMath.round(x.asReal(),mathContext)); }
@@ -495,8 +476,7 @@ public class ItrLang {
                 }
             }
             throw new UnsupportedOperationException("unsupported function: \""+name+"\"");
-        }else if(arg.isNumber()){
-            NumberValue x=(NumberValue)arg;
+        }else{
             switch (name) {
                 case "floor" -> { return CMath.floor(x.asComplex(),mathContext); }
                 case "round" -> { return CMath.round(x.asComplex(),mathContext); }
@@ -520,10 +500,6 @@ public class ItrLang {
             }
             throw new UnsupportedOperationException("unsupported function: \""+name+"\"");
         }
-        if(arg instanceof Sequence){
-            return MappedSequence.from((Sequence) arg,value -> applyFunction(value, name));
-        }
-        throw new UnsupportedOperationException("unsupported value type: "+arg.getClass().getName());
     }
 
     static Sequence repeat(Value a,Value b){
@@ -655,68 +631,120 @@ public class ItrLang {
         return contains(new int[]{' ','\n','\t','\r'},codepoint);
     }
 
-    Tuple stack;
-    Stack<Tuple> stackStack;
+    final OperandStack stack=new OperandStack();
     UTF8Input in;
     boolean implicitInput=false;
-    private ItrLang(Value ... initValues){
+    /**if true taking a value from the empty stack fails instead of returning zero,
+     * used when evaluating constant expressions at compile time*/
+    boolean requireArguments=false;
+    /**child interpreters that are currently not in use*/
+    private ArrayDeque<ItrLang> idleChildren;
+    private ItrLang(){
         Console c=System.console();
         if (c == null||c.charset().equals(StandardCharsets.UTF_8))
             in=UTF8Input.fromBytes(System.in);
         else // translate native encoding to UTF8
             in=UTF8Input.fromChars(new InputStreamReader(System.in,c.charset()));
-        stack=new Tuple(initValues);
-        stackStack=new Stack<>();
+    }
+    /**child interpreter sharing the input of parent*/
+    private ItrLang(ItrLang parent){
+        this(parent.in);
+    }
+    ItrLang(UTF8Input in){
+        this.in=in;
+    }
+    private ItrLang acquireChild(){
+        if(idleChildren==null||idleChildren.isEmpty())
+            return new ItrLang(this);
+        return idleChildren.pop();
+    }
+    private void releaseChild(ItrLang child){
+        child.stack.clear();
+        if(idleChildren==null)
+            idleChildren=new ArrayDeque<>();
+        idleChildren.push(child);
+    }
+    /**runs code on a child interpreter with the given initial stack, returns the top stack value of the child*/
+    Value callChild(Program code,Value a){
+        ItrLang child=acquireChild();
+        try{
+            child.stack.push(a);
+            return child.tryRun(code).popOrDefault(Int.ZERO);
+        }finally {
+            releaseChild(child);
+        }
+    }
+    Value callChild(Program code,Value a,Value b){
+        ItrLang child=acquireChild();
+        try{
+            child.stack.push(a);
+            child.stack.push(b);
+            return child.tryRun(code).popOrDefault(Int.ZERO);
+        }finally {
+            releaseChild(child);
+        }
+    }
+    /**runs code on a child interpreter with the given initial stack, returns the complete stack of the child*/
+    Tuple callChildForStack(Program code,Value a){
+        ItrLang child=acquireChild();
+        try{
+            child.stack.push(a);
+            return child.tryRun(code).toTuple();
+        }finally {
+            releaseChild(child);
+        }
     }
 
     static class StackRow extends Tuple{
         StackRow(Value ... elts){super(elts);}
     }
 
-    static int readInstruction(ArrayList<Integer> sourceCode,int ip){
+    static int readInstruction(CodeBuffer sourceCode,int ip){
         return ip>=0&&ip< sourceCode.size()?sourceCode.get(ip):'\0';
     }
-    Value popValue() throws IOException {
-        if(implicitInput&&stack.isEmpty()){
+    /**called when an operator needs a value from the empty stack*/
+    private void missingValue() throws IOException {
+        if(implicitInput)
             readValue();
-        }
+        else if(requireArguments)
+            throw new NoSuchElementException("missing argument");
+    }
+    Value popValue() throws IOException {
+        if(stack.isEmpty())
+            missingValue();
         return stack.popOrDefault(Int.ZERO);
     }
     Value peekValue() throws IOException {
-        if(implicitInput&&stack.isEmpty()){
-            readValue();
-        }
+        if(stack.isEmpty())
+            missingValue();
         return stack.peekOrDefault(Int.ZERO);
     }
     void pushValue(BigInteger i){
-        stack.push(new Int(i));
+        stack.push(Int.valueOf(i));
     }
     void pushValue(Value v){
         stack.push(v);
     }
 
     void openStack(){
-        stackStack.push(stack);
-        stack = new Tuple();
+        stack.openFrame();
     }
     void closeStack(){
-        Tuple prevStack = stackStack.popOrDefault(new Tuple());
+        Value[] values=stack.closeFrame();
         int i=0;
-        while(i<stack.size()&&stack.get(i) instanceof StackRow)
+        while(i<values.length&&values[i] instanceof StackRow)
             i++;
         if(i>0){
-            StackRow tail=new StackRow(stack.subList(i,stack.size()).toArray(Value[]::new));
-            stack.truncate(i);
-            pushValue(tail);
-            prevStack.push(new Matrix(stack));
+            Tuple rows=new Tuple(Arrays.copyOf(values,i));
+            rows.push(new StackRow(Arrays.copyOfRange(values,i,values.length)));
+            pushValue(new Matrix(rows));
         }else {
-            prevStack.push(stack);
+            pushValue(new Tuple(values));
         }
-        stack = prevStack;
     }
 
 
-    private static int findMatchingBracket(List<Integer> str,int i,int left,int right){
+    private static int findMatchingBracket(CodeBuffer str,int i,int left,int right){
         int k=1;
         while(i++<str.size()&&k>0){
             if(str.get(i)==left)
@@ -742,16 +770,17 @@ public class ItrLang {
                                                     .pow(fractionalDigits,mathContext),mathContext))));
                 }
             }else{
-                expr.add(new ValueToken(new Int(new BigInteger(current,base))));
+                expr.add(new ValueToken(Int.valueOf(new BigInteger(current,base))));
             }
         }
     }
-    private static Value tryParseNumber(List<Integer> str) {
+    private static Value tryParseNumber(CodeBuffer str) {
         ArrayList<ParserToken> expr=new ArrayList<>();
         StringBuilder current=new StringBuilder();
         int base=10;//supported bases: 2-10 or 16
         int fractionalDigits=-1;
-        for(int c:str){
+        for(int j=0;j<str.size();j++){
+            int c=str.get(j);
             if(c>='0'&&(c<=Math.min('0'+(base-1),'9'))){
                 current.append((char)c);
                 if(fractionalDigits>=0)
@@ -845,7 +874,7 @@ public class ItrLang {
         }
         return ((ValueToken)expr.get(0)).value;
     }
-    static Value parseValue(List<Integer> str){
+    static Value parseValue(CodeBuffer str){
         if(str.isEmpty())
             return Int.ZERO;
         if(str.get(0)=='"'){
@@ -853,15 +882,14 @@ public class ItrLang {
             for(int i=1;i<str.size();i++){//read until next "
                 if(str.get(i)=='\\'){//escape sequences
                     if(i+1==str.size()){
-                        buff.add(new Int(BigInteger.valueOf('\\')));
+                        buff.add(Int.valueOf('\\'));
                         continue;
                     }
-                    //noinspection RedundantCast
-                    switch ((int)str.get(++i)) {
-                        case 't' -> buff.add(new Int(BigInteger.valueOf('\t')));
-                        case 'n' -> buff.push(new Int(BigInteger.valueOf('\n')));
-                        case 'r' -> buff.push(new Int(BigInteger.valueOf('\r')));
-                        default -> buff.push(new Int(BigInteger.valueOf(str.get(i))));
+                    switch (str.get(++i)) {
+                        case 't' -> buff.add(Int.valueOf('\t'));
+                        case 'n' -> buff.push(Int.valueOf('\n'));
+                        case 'r' -> buff.push(Int.valueOf('\r'));
+                        default -> buff.push(Int.valueOf(str.get(i)));
                     }
                     continue;
                 }
@@ -870,7 +898,7 @@ public class ItrLang {
                         throw new IllegalArgumentException("unexpected end of string literal");
                     break;
                 }
-                buff.push(new Int(BigInteger.valueOf(str.get(i))));
+                buff.push(Int.valueOf(str.get(i)));
             }
             return buff;
         }
@@ -960,10 +988,13 @@ public class ItrLang {
         Value v=tryParseNumber(str);
         if(v!=null)
             return v;
-        return new Tuple(str.stream().map(i->new Int(BigInteger.valueOf(i))).toArray(Value[]::new));
+        Value[] chars=new Value[str.size()];
+        for(int i=0;i<chars.length;i++)
+            chars[i]=Int.valueOf(str.get(i));
+        return new Tuple(chars);
     }
 
-    void readBracket(int left,int right,ArrayList<Integer> buff) throws IOException {
+    void readBracket(int left,int right,CodeBuffer buff) throws IOException {
         buff.add(left);
         int k=1;
         int cp=in.readCodepoint();
@@ -982,7 +1013,7 @@ public class ItrLang {
         int cp=in.readCodepoint();
         while(isItrSpace(cp))//skip leading spaces
             cp=in.readCodepoint();
-        ArrayList<Integer> buff=new ArrayList<>();
+        CodeBuffer buff=new CodeBuffer();
         if(cp=='"'){
             buff.add(cp);
             cp=in.readCodepoint();
@@ -1036,8 +1067,21 @@ public class ItrLang {
         return Arrays.stream(arr).anyMatch(i -> i == x);
     }
 
-    static HashMap<Integer, OpOverwrite> opOverwrites=new HashMap<>();
-    record OpOverwrite(int op, boolean isAutoCall,ArrayList<Integer> asCode, Value asValue, HashMap<Integer, OpOverwrite> prevOverwrites) {
+    static final OperatorTable BUILTIN_OPERATORS=builtinOperators();
+    /**operators of the current overwrite state*/
+    static OperatorTable operators=BUILTIN_OPERATORS;
+    /**operator for a symbol that has been overwritten with a value or an auto-called function,
+     * auto-called functions are executed with the operators that were present when the overwrite was defined*/
+    record OpOverwrite(int op, boolean isAutoCall,Program asCode, Value asValue, OperatorTable prevOperators) implements Operator {
+        @Override
+        public int execute(ItrLang itr,Program program,int ip) throws IOException {
+            // overwritten operators do not consume the operands of the original operation
+            int next=program.entryPoint(ip+1);
+            if(isAutoCall)
+                return itr.call(asCode,prevOperators,next);
+            itr.pushValue(asValue);
+            return next;
+        }
     }
 
     static Stream<NumberValue> flatten(Value v){
@@ -1049,23 +1093,28 @@ public class ItrLang {
         return v.asTuple().stream().flatMap(ItrLang::flatten);
     }
 
-    static ArrayList<Integer> toCode(Value v){
+    static CodeBuffer toCode(Value v){
         //TODO sequence
-        return new ArrayList<>(v.asTuple().stream().flatMap(ItrLang::flatten).map(e->e.asInt().intValueExact()).toList());
+        CodeBuffer code=new CodeBuffer();
+        v.asTuple().stream().flatMap(ItrLang::flatten).forEach(e->code.add(e.asInt().intValueExact()));
+        return code;
     }
     static void overwriteOp(int op,Value v,boolean autoCall){
         OpOverwrite overwrite;
         if(autoCall){
-            ArrayList<Integer> code=toCode(v);
-            overwrite=new OpOverwrite(op,true,code,null,opOverwrites);
+            Program code=Program.compileCached(toCode(v));
+            overwrite=new OpOverwrite(op,true,code,null,operators);
         }else {
-            overwrite=new OpOverwrite(op,false,null,v,opOverwrites);
+            overwrite=new OpOverwrite(op,false,null,v,operators);
         }
-        opOverwrites=new HashMap<>(opOverwrites);
-        opOverwrites.put(op,overwrite);
+        operators=operators.with(op,overwrite);
     }
 
-    static int readItrArgs(ArrayList<Integer> sourceCode,int ip,ArrayList<Integer> argString){
+    /**0 if op is not overwritten, 1 if op is overwritten with a value, 2 if op is overwritten with an auto-called function*/
+    static int overwriteState(int op){
+        return operators.get(op) instanceof OpOverwrite o?o.isAutoCall?2:1:0;
+    }
+    static int readItrArgs(CodeBuffer sourceCode,int ip,CodeBuffer argString){
         int op=readInstruction(sourceCode,ip++);
         boolean isNested=false;
         while(contains(iteratorOps,op)){
@@ -1073,8 +1122,7 @@ public class ItrLang {
             op=readInstruction(sourceCode,ip++);
             isNested=true;
         }
-        if(opOverwrites.containsKey(op)){
-            OpOverwrite o=opOverwrites.get(op);
+        if(operators.get(op) instanceof OpOverwrite o){
             if(o.isAutoCall){
                 argString.add(op);
                 return ip;
@@ -1137,13 +1185,13 @@ public class ItrLang {
         return ip-(op==';'?1:0);
     }
 
-    void iteratorOpMapToStack(Sequence v, ArrayList<Integer> code) throws IOException {
+    void iteratorOpMapToStack(Sequence v, Program code) throws IOException {
         for(Value e: v){
             pushValue(e);
             interpret(code);
         }
     }
-    void iteratorOpReduce(Sequence v, ArrayList<Integer> code) throws IOException {
+    void iteratorOpReduce(Sequence v, Program code) throws IOException {
         Iterator<Value> itr=v.iterator();
         if(!itr.hasNext())
             return;
@@ -1154,45 +1202,45 @@ public class ItrLang {
         }
     }
 
-    void iteratorOpMap(Sequence v, ArrayList<Integer> code) throws IOException {
+    void iteratorOpMap(Sequence v, Program code) throws IOException {
         try {
-            pushValue(MappedSequence.from(v, e -> new ItrLang(e).tryRun(code).popOrDefault(Int.ZERO)));
+            pushValue(MappedSequence.from(v, e -> callChild(code,e)));
         }catch (UncheckedIOException io){
             throw io.getCause();
         }
     }
-    void iteratorOpFlatMap(Sequence v, ArrayList<Integer> code) throws IOException {
+    void iteratorOpFlatMap(Sequence v, Program code) throws IOException {
         try {
-            pushValue(FlatMappedSequence.from(v, e -> new ItrLang(e).tryRun(code)));
+            pushValue(FlatMappedSequence.from(v, e -> callChildForStack(code,e)));
         }catch (UncheckedIOException io){
             throw io.getCause();
         }
     }
-    void iteratorOpGroups(Sequence v, ArrayList<Integer> code) throws IOException {
+    void iteratorOpGroups(Sequence v, Program code) throws IOException {
         try {
-            pushValue(GroupedSequence.from(v,e -> new ItrLang(e).tryRun(code).popOrDefault(Int.ZERO)));
+            pushValue(GroupedSequence.from(v,e -> callChild(code,e)));
         }catch (UncheckedIOException io){
             throw io.getCause();
         }
     }
-    void iteratorOpSubsets(Sequence v, ArrayList<Integer> code) throws IOException {
+    void iteratorOpSubsets(Sequence v, Program code) throws IOException {
         try {
-            pushValue(SubsetSequence.from(v,e -> new ItrLang(e).tryRun(code).popOrDefault(Int.ZERO)));
+            pushValue(SubsetSequence.from(v,e -> callChild(code,e)));
         }catch (UncheckedIOException io){
             throw io.getCause();
         }
     }
-    void iteratorOpZip(Sequence l,Sequence r, ArrayList<Integer> code) throws IOException {
+    void iteratorOpZip(Sequence l,Sequence r, Program code) throws IOException {
         try {
             pushValue(BinaryOperationSequence.from(l,false,r,false,
-                    (e,f) -> new ItrLang(e,f).tryRun(code).popOrDefault(Int.ZERO)));
+                    (e,f) -> callChild(code,e,f)));
         }catch (UncheckedIOException io){
             throw io.getCause();
         }
     }
-    void iteratorOpCauchy(Sequence l,Sequence r,boolean wrapDiagonals, ArrayList<Integer> code) throws IOException {
+    void iteratorOpCauchy(Sequence l,Sequence r,boolean wrapDiagonals, Program code) throws IOException {
         try {
-            pushValue(ProductSequence.from(l.asRASequence(),r.asRASequence(),wrapDiagonals,(e,f) -> new ItrLang(e,f).tryRun(code).popOrDefault(Int.ZERO)));
+            pushValue(ProductSequence.from(l.asRASequence(),r.asRASequence(),wrapDiagonals,(e,f) -> callChild(code,e,f)));
         }catch (UncheckedIOException io){
             throw io.getCause();
         }
@@ -1227,7 +1275,7 @@ public class ItrLang {
             case 'l'->{ //log2/log10
                 Value a=popValue();
                 a=applyFunction(a,"log");
-                pushValue(binaryNumberOp(a,true,new Real(page==0?LOG2INV:LOG10INV),true,ItrLang::multiplyNumbers));
+                pushValue(binaryNumberOp(a,true,new Real(page==0?log2Inv():log10Inv()),true,ItrLang::multiplyNumbers));
             }
             case 'r'->{ // random
                 if(page==0){
@@ -1253,7 +1301,7 @@ public class ItrLang {
         }
     }
 
-    Tuple tryRun(ArrayList<Integer> code){
+    OperandStack tryRun(Program code){
         try{
             interpret(code);
         }catch (IOException io){
@@ -1261,878 +1309,697 @@ public class ItrLang {
         }
         return stack;
     }
-    void finishedNumber(int fractionalDigits) throws IOException {
+    /**true while the digits of a number literal are read*/
+    boolean numberMode=false;
+    /**number of digits after the decimal point of the current number literal, -1 if there is no decimal point*/
+    int fractionalDigits=-1;
+
+    /**handler for digits and the decimal point (digit -1), consecutive digits are combined into a single number*/
+    record NumberLiteral(int digit) implements Operator{
+        static final int DECIMAL_POINT=-1;
+        @Override
+        public int execute(ItrLang itr,Program program,int ip) throws IOException {
+            if(digit==DECIMAL_POINT)
+                itr.readDecimalPoint();
+            else
+                itr.readDigit(digit);
+            return program.next(ip);
+        }
+    }
+    void readDigit(int digit) throws IOException {
+        if(fractionalDigits>=0)
+            fractionalDigits++;
+        if(numberMode){
+            BigInteger v=((NumberValue)popValue()).asInt();
+            pushValue(BigInteger.TEN.multiply(v).add(BigInteger.valueOf(digit)));
+        }else{
+            pushValue(BigInteger.valueOf(digit));
+            numberMode=true;
+        }
+    }
+    void readDecimalPoint() throws IOException {
+        if(fractionalDigits>=0)
+            finishNumber();
+        fractionalDigits=0;
+        if(!numberMode){
+            pushValue(Int.ZERO);
+            numberMode=true;
+        }
+    }
+    void finishNumber() throws IOException {
+        numberMode=false;
         if(fractionalDigits>0){
             Value v=popValue();
             pushValue(new Real(((NumberValue)v).asReal().scaleByPowerOfTen(-fractionalDigits)));
         }
+        fractionalDigits=-1;
     }
-    void interpret(ArrayList<Integer> sourceCode) throws IOException {
-        boolean numberMode=false;
-        int fractionalDigits=-1;
 
-        int command;
-        for (int ip = 0; ip < sourceCode.size();) {
-            command = readInstruction(sourceCode,ip++);
-            if(command == '\0'){
-                break;//reached end of program
-            }
-            if(command=='\''){
-                command=readInstruction(sourceCode,ip++);
-                //push char as string
-                pushValue(new Int(BigInteger.valueOf(command)));
-                continue;
-            }
-            if(command=='"'){
-                ArrayList<Integer> str=new ArrayList<>();
-                str.add((int)'"');//position of "
-                while(ip<sourceCode.size()){
-                    command=readInstruction(sourceCode,ip++);
-                    str.add(command);
-                    if(command=='"'){
-                        str.add((int)'"');
+    /**return value of operators that requested a call with call()*/
+    static final int CALL=-1;
+    /**pending call requested by the last operator*/
+    private Program callTarget;
+    private OperatorTable callOperators;
+    private int callReturn;
+    /**lets the interpreter execute code after the current operator returns,
+     * calls are executed on a heap allocated call stack instead of recursive calls to interpret
+     * @param operators operators used while code is executed, the current operators are restored once the call returns,
+     *                  if operators is null the operators after the call are kept
+     * @param returnIp position of the instruction executed after the call
+     * @return the value the operator has to return*/
+    int call(Program code,OperatorTable operators,int returnIp){
+        callTarget=code;
+        callOperators=operators;
+        callReturn=returnIp;
+        return CALL;
+    }
+    /**code that is continued once the current call returns
+     * @param restore operators that are restored when returning, null if the operators should not be changed*/
+    private record Frame(Program program,int returnIp,OperatorTable restore){}
+    private Frame[] frames=new Frame[16];
+    private int frameCount=0;
+
+    private static boolean isEnd(Program program,int ip){
+        return ip>=program.size()||program.opcode(ip)=='\0';
+    }
+    void interpret(Program program) throws IOException {
+        int base=frameCount;
+        OperatorTable restoreOnExit=null;
+        int ip=0;
+        try{
+            while(true){
+                if(isEnd(program,ip)){//reached end of current code
+                    if(numberMode)
+                        finishNumber();
+                    if(frameCount==base)
                         break;
-                    }
-                    if(command=='\\'){
-                        command=readInstruction(sourceCode,ip++);
-                        str.add(command);
-                    }
+                    Frame frame=frames[--frameCount];
+                    frames[frameCount]=null;
+                    program=frame.program;
+                    ip=frame.returnIp;
+                    if(frame.restore!=null)
+                        operators=frame.restore;
+                    continue;
                 }
-                pushValue(parseValue(str));
-                continue;
-            }
-            if(command=='»'){
-                Tuple str=new Tuple();
-                int level=1;
-                while(ip<sourceCode.size()){
-                    command=readInstruction(sourceCode,ip++);
-                    if(command=='«'){
-                        level--;
-                        if(level==0)//TODO don't exit code-string literal within string or char literal
-                            break;
-                    }else if(command=='»'){
-                        level++;
+                Operator op=operators.get(program.opcode(ip));
+                if(numberMode&&!(op instanceof NumberLiteral))
+                    finishNumber();
+                ip=op.execute(this,program,ip);
+                if(ip==CALL){
+                    OperatorTable restore=callOperators==null?null:operators;
+                    if(isEnd(program,callReturn)){// tail call: the current code does not have to be continued
+                        // the operators restored when returning from the call are overwritten by the restore of the enclosing call
+                        if(restore!=null){
+                            if(frameCount==base){
+                                if(restoreOnExit==null)
+                                    restoreOnExit=restore;
+                            }else if(frames[frameCount-1].restore==null){
+                                Frame top=frames[frameCount-1];
+                                frames[frameCount-1]=new Frame(top.program,top.returnIp,restore);
+                            }
+                        }
+                    }else{
+                        if(frameCount==frames.length)
+                            frames=Arrays.copyOf(frames,2*frames.length);
+                        frames[frameCount++]=new Frame(program,callReturn,restore);
                     }
-                    str.add(new Int(BigInteger.valueOf(command)));
-                }
-                // push code-points of string as tuple
-                pushValue(str);
-            }
-            if(opOverwrites.containsKey(command)){
-                numberMode=false;
-                OpOverwrite o=opOverwrites.get(command);
-                if(o.isAutoCall){
-                    HashMap<Integer, OpOverwrite> prev=opOverwrites;
-                    opOverwrites=o.prevOverwrites;
-                    interpret(o.asCode);
-                    opOverwrites=prev;
-                    continue;
+                    if(callOperators!=null)
+                        operators=callOperators;
+                    program=callTarget;
+                    ip=0;
+                    callTarget=null;
+                    callOperators=null;
                 }
-                pushValue(o.asValue);
-                continue;
             }
-            if(command=='.'){
-                if(fractionalDigits>=0){
-                    finishedNumber(fractionalDigits);
-                    numberMode=false;
-                }
-                fractionalDigits=0;
-                if(!numberMode){
-                    pushValue(Int.ZERO);
-                    numberMode=true;
+        }finally{
+            while(frameCount>base)
+                frames[--frameCount]=null;
+        }
+        if(restoreOnExit!=null)
+            operators=restoreOnExit;
+    }
+
+    /**registers op as the operator for the given symbol, replacing the current operator for that symbol*/
+    static void registerOperator(int symbol,Operator op){
+        operators=operators.with(symbol,op);
+    }
+    /**operator executing one of the iterator operations with the compiled iterator arguments*/
+    @FunctionalInterface
+    private interface IteratorOperation{
+        void apply(ItrLang itr,Program args) throws IOException;
+    }
+    private static Operator iteratorOperator(IteratorOperation op){
+        return (itr,program,ip)->{
+            Program.IteratorArgs args=program.iteratorArgs(ip+1);
+            op.apply(itr,args.code());
+            return args.next();
+        };
+    }
+    private static Value range(Value a,boolean includeZero){
+        if (a.isReal()) {
+            NumberValue x=(NumberValue) a;
+            BigInteger sign=BigInteger.ONE;
+            if(compareNumbers(x,Int.ZERO)<0){
+                x=negateNumber(x);
+                sign=sign.negate();
+            }
+            Tuple r = new Tuple();//TODO sequence
+            BigInteger i=includeZero?BigInteger.ZERO:BigInteger.ONE;
+            for (; includeZero?compareNumbers(Int.valueOf(i), x) < 0:compareNumbers(Int.valueOf(i), x) <= 0; i = i.add(BigInteger.ONE))
+                r.push(Int.valueOf(i.multiply(sign)));
+            return r;
+        }
+        if (a instanceof Complex)
+            return Complex.range((Complex) a,includeZero);
+        if (a instanceof Tuple) {
+            Tuple r = new Tuple();
+            for (int i = includeZero?0:1; i <= ((Tuple) a).size(); i++)
+                r.push(((Tuple) a).head(i));
+            return r;
+        }
+        //XXX? what is the range of a matrix
+        throw new Error("unsupported operand for " + (includeZero?'º':'¹') + ": " + a.getClass().getName());
+    }
+    private static Value transpose(Value a){
+        if(a.isNumber())
+            return a;
+        if(a instanceof Matrix)
+            return ((Matrix) a).transposed();
+        // TODO sequence
+        if(a instanceof Tuple t){//transpose tuple
+            Tuple res=new Tuple();
+            for(int r=0;r<t.size();r++){
+                Tuple row=t.get(r).asTuple();
+                for(int c=0;c<row.size();c++){
+                    while(res.size()<row.size())
+                        res.push(new Tuple(Collections.nCopies(t.size(),Int.ZERO).toArray(Value[]::new)));
+                    Tuple column=(Tuple)res.get(c);
+                    column.set(r,row.get(c));
                 }
-                continue;
             }
-            if(command>='0'&&command<='9'){
-                if(fractionalDigits>=0)
-                    fractionalDigits++;
-                if(numberMode){
-                    BigInteger v=((NumberValue)popValue()).asInt();
-                    pushValue(BigInteger.TEN.multiply(v).add(BigInteger.valueOf(command-'0')));
-                }else{
-                    pushValue(BigInteger.valueOf(command-'0'));
-                    numberMode=true;
-                }
-                continue;
+            return res;
+        }
+        throw new UnsupportedOperationException("cannot transpose values of type: "+a.getClass().getName());
+    }
+    private static void pushParts(ItrLang itr,Tuple[] parts,boolean reverse){
+        if(reverse){
+            for(int i=parts.length-1;i>=0;i--){
+                itr.pushValue(parts[i]);
             }
-            numberMode=false;
-            finishedNumber(fractionalDigits);
-            fractionalDigits=-1;
-            switch (command) {
-                //noinspection DataFlowIssue (redundant switch labels)
-                case '0','1','2','3','4','5','6','7','8','9', // digits have already handled
-                        '"', '\'', '»', '«', //string and char-literals have already been handled
-                        '\t', '\n', '\r' -> {}//ignore spaces
-                //comments
-                case ';' -> {
-                    while (ip++ < sourceCode.size()) {
-                        if (readInstruction(sourceCode, ip) == '\n')
-                            break;
-                    }
-                    // continue;
-                }
-                case '(' ->//start tuple
-                        openStack();
-                case ',' -> { // create new stack row
-                    int i = 0;
-                    while (i < stack.size() && stack.get(i) instanceof StackRow)
-                        i++;
-                    StackRow tail = new StackRow(stack.subList(i, stack.size()).toArray(Value[]::new));
-                    stack.truncate(i);
-                    pushValue(tail);
-                }
-                case ')' -> //end tuple
-                        closeStack();
-
-                // control flow
-                case '©' -> {
-                    Value code = popValue();
-                    interpret(toCode(code));
-                }
-                case '?' ->// ? start if/while statement
-                        throw new Error("unimplemented");
-
-                //break;
-                case '!' ->// ? else ? inverted if
-                        throw new Error("unimplemented");
-
-                //break;
-                case '[' ->// end-if
-                        throw new Error("unimplemented");
-
-                //break;
-                case ']' ->// end-while
-                        throw new Error("unimplemented");
-
-                //break;
-                case '$' -> {// overwrite character
-                    Value v = popValue();
-                    command = readInstruction(sourceCode, ip);
-                    boolean autoCall = false;
-                    if (command == '©') {
-                        command = readInstruction(sourceCode, ++ip);
-                        autoCall = true;
-                    }
-                    if (contains(overwriteBlacklist, command)) {
-                        continue;
-                    }
-                    ip++;//consume next character
-                    overwriteOp(command, v, autoCall);
-                }
+        }else{
+            for(Tuple part:parts){
+                itr.pushValue(part);
+            }
+        }
+    }
 
-                // stack operations
-                case 'ä' -> {//dup
-                    Value a = peekValue();
-                    pushValue(a);
-                }
-                case 'á' -> {//over
-                    Value a = popValue();
-                    Value b = peekValue();
-                    pushValue(a);
-                    pushValue(b);
-                }
-                case 'à' -> {//swap
-                    Value a = popValue();
-                    Value b = popValue();
-                    pushValue(a);
-                    pushValue(b);
-                }
-                case 'â' -> {//"under" (shorthand for swap, over) push top element below second element
-                    Value a = popValue();
-                    Value b = popValue();
-                    pushValue(a);
-                    pushValue(b);
-                    pushValue(a);
-                }
-                case 'å' -> //drop
-                        popValue();
+    private static OperatorTable builtinOperators(){
+        Operator[] ops=new Operator[OperatorTable.DIRECT_SYMBOLS];
+        for(int d=0;d<=9;d++)
+            ops['0'+d]=new NumberLiteral(d);
+        ops['.']=new NumberLiteral(NumberLiteral.DECIMAL_POINT);
+        // string, char and code-literals
+        ops['"']=ops['\'']=ops['»']=(itr,program,ip)->{
+            itr.pushValue(program.constant(program.operand(ip)));
+            return program.next(ip);
+        };
+        // end of code-literals and comments are skipped by the instruction, spaces are ignored
+        // all of them are mapped to NOP
+        ops['(']=Operator.of(ItrLang::openStack);//start tuple
+        ops[',']=Operator.of(itr->{// create new stack row
+            int i = 0;
+            while (i < itr.stack.size() && itr.stack.get(i) instanceof StackRow)
+                i++;
+            itr.pushValue(new StackRow(itr.stack.removeFrom(i)));
+        });
+        ops[')']=Operator.of(ItrLang::closeStack);//end tuple
 
-                // IO
-                // TODO read byte
-                case '¢' -> // read char
-                        pushValue(BigInteger.valueOf(in.readCodepoint()));
-                case '#' -> // parse word
-                        readValue();
+        // control flow
+        ops['©']=(itr,program,ip)->itr.call(Program.compileCached(toCode(itr.popValue())),null,program.next(ip));
+        // ?...[ if-block, ?...] while-block, ! inverts the condition
+        ops['?']=(itr,program,ip)->itr.popValue().asBool()?program.next(ip):program.operand(ip);
+        ops['!']=(itr,program,ip)->itr.popValue().asBool()?program.operand(ip):program.next(ip);
+        // '[' only marks the end of a block and is mapped to NOP
+        ops[']']=(itr,program,ip)->{// jump back to start of while-block
+            int start=program.operand(ip);
+            return start==Program.NO_TARGET?program.next(ip):start;
+        };
+        ops['$']=(itr,program,ip)->{// overwrite character
+            Value v = itr.popValue();
+            int operand=program.operand(ip);
+            if (operand >= 0) {// symbol can be overwritten
+                overwriteOp(operand&~Program.AUTO_CALL, v, (operand&Program.AUTO_CALL)!=0);
+            }
+            return program.next(ip);
+        };
 
-                // addLater read char, read bytes
-                // addLater read single line, read word
-                case '§' -> {// read "paragraph" (read all characters until first empty line)
-                    Tuple paragraph = new Tuple();
-                    int c = in.readCodepoint();
-                    while (c >= 0) {
-                        if (c == '\n') {
-                            c = in.readCodepoint();
-                            if (c == '\n')//double-new line
-                                break;
-                            paragraph.add(new Int(BigInteger.valueOf('\n')));
-                            continue;
-                        }
-                        paragraph.add(new Int(BigInteger.valueOf(c)));
-                        c = in.readCodepoint();
-                    }
-                    pushValue(paragraph);
-                }
-                case '¥' -> {// write char(s)
-                    Tuple t = popValue().asTuple();
-                    t.stream().flatMap(ItrLang::flatten).
-                            forEach(b -> writeCodepoint(b.asInt().intValueExact()));
-                }
-                case '£' -> // write value
-                        System.out.print(popValue());
+        // stack operations
+        ops['ä']=Operator.of(itr->itr.pushValue(itr.peekValue()));//dup
+        ops['á']=Operator.of(itr->{//over
+            Value a = itr.popValue();
+            Value b = itr.peekValue();
+            itr.pushValue(a);
+            itr.pushValue(b);
+        });
+        ops['à']=Operator.of(itr->{//swap
+            Value a = itr.popValue();
+            Value b = itr.popValue();
+            itr.pushValue(a);
+            itr.pushValue(b);
+        });
+        ops['â']=Operator.of(itr->{//"under" (shorthand for swap, over) push top element below second element
+            Value a = itr.popValue();
+            Value b = itr.popValue();
+            itr.pushValue(a);
+            itr.pushValue(b);
+            itr.pushValue(a);
+        });
+        ops['å']=Operator.of(ItrLang::popValue);//drop
 
-                // TODO value from/to  string
-                // arithmetic operations
-                case '+' -> {
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(add(a, b));
-                }
-                case '-' -> {
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,false,b,false,ItrLang::subtractNumbers));
-                }
-                case '·' -> {//point-wise multiplication
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,true,b,true,ItrLang::multiplyNumbers));
-                }
-                case '÷' -> {// point-wise (fractional) division
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,true, b,true, ItrLang::realDivide));
-                }
-                case ':' -> {//integer division
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,true, b,true,ItrLang::intDivide));
-                }
-                case '%' -> {// remainder
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,true,b,false,ItrLang::remainder));
-                }
-                case 'd' -> {//division and remainder
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,true,b,false,ItrLang::remainder));
-                    pushValue(binaryNumberOp(a,true,b,true,ItrLang::intDivide));
-                }
-                case '&' -> {// bit-wise and
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,true,b,true,ItrLang::andNumbers));
-                }
-                case '|' -> {//  bit-wise or
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,false,b,false,ItrLang::orNumbers));
-                }
-                case 'x' -> {//  bit-wise xor
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,false,b,false,ItrLang::xorNumbers));
-                }
-                case '>' -> {
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,false, b,false, (x, y) -> new Int(BigInteger.valueOf(compareNumbers(x, y) > 0 ? 1 : 0))));
-                }
-                case '=' -> {
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,false, b,false, (x, y) -> new Int(BigInteger.valueOf(compareNumbers(x, y) == 0 ? 1 : 0))));
-                }
-                case '<' -> {
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,false, b,false, (x, y) -> new Int(BigInteger.valueOf(compareNumbers(x, y) < 0 ? 1 : 0))));
-                }
-                case 'm' -> {//minimum
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,false,b,false,(x,y)->compareNumbers(x,y)<0?x:y));
-                }
-                case 'w' -> {//maximum
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,false,b,false,(x,y)->compareNumbers(x,y)>0?x:y));
-                }
-                case 'g' -> {//gcd
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,false,b,false, ItrLang::gcd));
-                }
-                case '¬' -> {
-                    Value a = popValue();
-                    pushValue(unaryNumberOp(a, x -> compareNumbers(x, Int.ZERO) == 0 ? Int.ONE : Int.ZERO));
-                }
-                case '¿' -> {
-                    Value a = popValue();
-                    pushValue(unaryNumberOp(a, x -> compareNumbers(x, Int.ZERO) == 0 ? Int.ZERO : Int.ONE));
-                }
-                case 's' -> {//sign
-                    Value a = popValue();
-                    pushValue(unaryNumberOp(a, x -> {
-                        if(x.isReal()){
-                            int c = compareNumbers(x, Int.ZERO);
-                            return new Int(BigInteger.valueOf(c > 0 ? 1 : c < 0 ? -1 : 0));
-                        }
-                        if(x instanceof Complex)
-                            return realDivide(x,new Real(Complex.abs((Complex) x,mathContext)));
-                        throw new Error("unsupported operand for 's': " + x.getClass().getName());
-                    }));
-                }
-                case 'a' -> {//absolute value/determinant
-                    Value a = popValue();
-                    @SuppressWarnings("unchecked")
-                    Function<Value, Value>[] f = new Function[1];
-                    f[0] = (x) -> {
-                        if (x instanceof Sequence)
-                            return MappedSequence.from((Sequence)x,f[0]);
-                        if (x.isReal())
-                            return compareNumbers((NumberValue) x, Int.ZERO) < 0 ? negate(x) : x;
-                        if(x instanceof Complex)
-                            return new Real(Complex.abs((Complex) x,mathContext));
-                        if (x instanceof Matrix)
-                            return ((Matrix) x).determinant();
-                        throw new Error("unsupported operand for 'a': " + x.getClass().getName());
-                    };
-                    pushValue(f[0].apply(a));
-                }
-                case '~' -> {
-                    Value a = popValue();
-                    pushValue(negate(a));
-                }
-                case 'c' -> {
-                    Value a = popValue();
-                    pushValue(conjugate(a));
-                }
-                case '¯' -> {
-                    Value a = popValue();
-                    pushValue(invert(a));
-                }
-                case 'º' -> {
-                    Value a = popValue();
-                    if (a.isReal()) {
-                        NumberValue x=(NumberValue) a;
-                        BigInteger sign=BigInteger.ONE;
-                        if(compareNumbers(x,Int.ZERO)<0){
-                            x=negateNumber(x);
-                            sign=sign.negate();
-                        }
-                        Tuple r = new Tuple();//TODO sequence
-                        for (BigInteger i = BigInteger.ZERO; compareNumbers(new Int(i), x) < 0; i = i.add(BigInteger.ONE))
-                            r.push(new Int(i.multiply(sign)));
-                        pushValue(r);
+        // IO
+        // TODO read byte
+        ops['¢']=Operator.of(itr->itr.pushValue(BigInteger.valueOf(itr.in.readCodepoint())));// read char
+        ops['#']=Operator.of(ItrLang::readValue);// parse word
+        // addLater read char, read bytes
+        // addLater read single line, read word
+        ops['§']=Operator.of(itr->{// read "paragraph" (read all characters until first empty line)
+            Tuple paragraph = new Tuple();
+            int c = itr.in.readCodepoint();
+            while (c >= 0) {
+                if (c == '\n') {
+                    c = itr.in.readCodepoint();
+                    if (c == '\n')//double-new line
                         break;
-                    }
-                    if (a instanceof Complex) {
-                        pushValue(Complex.range((Complex) a,true));
-                        break;
-                    }
-                    if (a instanceof Tuple) {
-                        Tuple r = new Tuple();
-                        for (int i = 0; i <= ((Tuple) a).size(); i++)
-                            r.push(((Tuple) a).head(i));
-                        pushValue(r);
-                        break;
-                    }
-                    //XXX? what is the range of a matrix
-                    throw new Error("unsupported operand for " + command + ": " + a.getClass().getName());
-                }//break;
-                case '¹' -> {
-                    Value a = popValue();
-                    if (a.isReal()) {
-                        NumberValue x=(NumberValue) a;
-                        BigInteger sign=BigInteger.ONE;
-                        if(compareNumbers(x,Int.ZERO)<0){
-                            x=negateNumber(x);
-                            sign=sign.negate();
-                        }
-                        Tuple r = new Tuple();
-                        for (BigInteger i = BigInteger.ONE; compareNumbers(new Int(i), x) <= 0; i = i.add(BigInteger.ONE))
-                            r.push(new Int(i.multiply(sign)));
-                        pushValue(r);
-                        break;
-                    }
-                    if (a instanceof Complex) {
-                        pushValue(Complex.range((Complex) a,false));
-                        break;
-                    }
-                    if (a instanceof Tuple) {
-                        Tuple r = new Tuple();
-                        for (int i = 1; i <= ((Tuple) a).size(); i++)
-                            r.push(((Tuple) a).head(i));
-                        pushValue(r);
-                        break;
-                    }
-                    //XXX? what is the range of a matrix
-                    throw new Error("unsupported operand for " + command + ": " + a.getClass().getName());
-                }//break;
-                case '¨' -> {
-                    Value b = popValue();
-                    Value a = popValue();
-                    if (a.isNumber()||b.isNumber()) {
-                        Complex A=((NumberValue)a).asComplex();
-                        Complex B=((NumberValue)b).asComplex();
-                        boolean reverseX=false,reverseY=false;
-                        BigDecimal x0=BigMath.round(A.real(),mathContext),x1=BigMath.round(B.real(),mathContext),
-                                y0=BigMath.round(A.imaginary(),mathContext),y1=BigMath.round(B.imaginary(),mathContext);
-                        // addLater? round away from center
-                        if(x0.compareTo(x1)>0){
-                            reverseX=true;
-                        }
-                        if(y0.compareTo(y1)>0){
-                            reverseY=true;
-                        }
-                        Tuple r=new Tuple();
-                        for(BigDecimal x=x0;reverseX?x.compareTo(x1)>=0:x.compareTo(x1)<=0;x=x.add(BigDecimal.valueOf(reverseX?-1:1))){
-                            for(BigDecimal y=y0;reverseY?y.compareTo(y1)>=0:y.compareTo(y1)<=0;y=y.add(BigDecimal.valueOf(reverseY?-1:1))){
-                                r.push(new Complex(x,y));
-                            }
-                        }
-                        pushValue(r);
-                        break;
-                    }
-                    // addLater ¨ for matrices and ranges
-                    throw new Error("unsupported operands for "+command+" : " + a.getClass().getName()+" and "+b.getClass().getName());
-                }//break;
-                case 'L' -> {//length
-                    Value a = peekValue();
-                    if (a instanceof Tuple)
-                        pushValue(new Int(BigInteger.valueOf(((Tuple) a).size())));
-                    else if (a instanceof Matrix)
-                        pushValue(new Int(BigInteger.valueOf(((Matrix) a).nrows())));
-                    else
-                        pushValue(Int.ONE);
-                }
-                case 'B' -> { // bits
-                    Value a=popValue();
-                    if(a.isNumber()){
-                        BigInteger x=((NumberValue)a).asInt();
-                        Tuple bits=new Tuple();
-                        while(x.signum()!=0){
-                            bits.push(new Int(x.and(BigInteger.ONE)));
-                            if(x.equals(BigInteger.valueOf(-1)))
-                                break;
-                            x=x.shiftRight(1);
-                        }
-                        pushValue(bits);
-                        return;
-                    }
-                    Stream<Value> t=a.toTuple().stream().flatMap(ItrLang::flatten);
-                    BigInteger n=BigInteger.ZERO,mask=BigInteger.ONE;
-                    for(Value e:(Iterable<Value>)t::iterator){
-                        if(e.asBool())
-                            n=n.add(mask);
-                        mask=mask.shiftRight(1);
-                    }
-                    pushValue(new Int(n));
-                }
-                case 'e' -> { // exponential
-                    Value a = popValue();
-                    pushValue(applyFunction(a, "exp"));
-                }
-                case 'n' -> { // natural logarithm
-                    Value a = popValue();
-                    pushValue(applyFunction(a, "log"));
-                }
-                case 'l' -> { // logarithm
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(divide_right(applyFunction(a, "log"),applyFunction(b, "log")));
-                }
-                case 'r' -> { // square root
-                    Value a = popValue();
-                    pushValue(applyFunction(a, "sqrt"));
-                }
-                case 'æ' -> { // functions page 0
-                    command=readInstruction(sourceCode,ip++);
-                    evaluateFunction(command,0);
-                }
-                case 'Æ' -> { // functions page 1
-                    command=readInstruction(sourceCode,ip++);
-                    evaluateFunction(command,1);
-                }
-                case '½' -> {
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,true,new Int(BigInteger.valueOf(2)),true,ItrLang::realDivide));
-                }
-                case 'i','j','k' -> {
-                    Value a = popValue();
-                    pushValue(binaryNumberOp(a,true,Complex.I,true,ItrLang::multiply));
-                }
-                case '²' -> {
-                    Value a = popValue();
-                    pushValue(multiply(a, a));
-                }
-                case '³' -> {
-                    Value a = popValue();
-                    pushValue(multiply(a, multiply(a, a)));
-                }
-                case 'f' -> {
-                    Value a = popValue();
-                    pushValue(factorize(a));
-                }
-                // matrix operations
-                case '*' -> {
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(multiply(a, b));
-                }
-                case '/' -> {// right division A/B -> AB⁻¹
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(divide_right(a, b));
-                }
-                case '\\' -> {// left division A\B -> A⁻¹B
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(divide_left(a, b));
-                }
-                case '^' -> {
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(pow(a, b));
-                }
-                case 'T','H' -> {
-                    Value a = popValue();
-                    if(command=='H')
-                        a=conjugate(a);
-                    if(a.isNumber()){
-                        pushValue(a);
-                        continue;
-                    }
-                    if(a instanceof Matrix){
-                        pushValue(((Matrix) a).transposed());
-                        continue;
-                    }
-                    // TODO sequence
-                    if(a instanceof Tuple t){//transpose tuple
-                        Tuple res=new Tuple();
-                        for(int r=0;r<t.size();r++){
-                            Tuple row=t.get(r).asTuple();
-                            for(int c=0;c<row.size();c++){
-                                while(res.size()<row.size())
-                                    res.push(new Tuple(Collections.nCopies(t.size(),Int.ZERO).toArray(Value[]::new)));
-                                Tuple column=(Tuple)res.get(c);
-                                column.set(r,row.get(c));
-                            }
-                        }
-                        pushValue(res);
-                        continue;
-                    }
-                    throw new UnsupportedOperationException("cannot transpose values of type: "+a.getClass().getName());
+                    paragraph.add(Int.valueOf('\n'));
+                    continue;
                 }
+                paragraph.add(Int.valueOf(c));
+                c = itr.in.readCodepoint();
+            }
+            itr.pushValue(paragraph);
+        });
+        ops['¥']=Operator.of(itr->{// write char(s)
+            Tuple t = itr.popValue().asTuple();
+            t.stream().flatMap(ItrLang::flatten).
+                    forEach(b -> writeCodepoint(b.asInt().intValueExact()));
+        });
+        ops['£']=Operator.of(itr->System.out.print(itr.popValue()));// write value
 
-                // vector operations
-                case '¡' -> {// TODO reverse rows and columns when reversing matrix
-                    Tuple a = popValue().asTuple();
-                    pushValue(reverse(a));
-                }
-                case '°' -> {
-                    Tuple b = popValue().asTuple();
-                    Tuple a = popValue().asTuple();
-                    pushValue(concatenate(a, b));
-                }
-                case '×' -> {
-                    Value b = popValue();
-                    Value a = popValue();
-                    pushValue(repeat(a, b));
-                }
-                case 'é' -> {
-                    int n=1;
-                    boolean implicitIndex=true;
-                    Value v=popValue();
-                    if(v.isNumber()){
-                        n=((NumberValue)v).asInt().intValueExact();
-                        implicitIndex=false;
-                        v=popValue();
+        // TODO value from/to  string
+        // arithmetic operations
+        ops['+']=Operator.binary(ItrLang::add);
+        ops['-']=Operator.binary((a,b)->binaryNumberOp(a,false,b,false,ItrLang::subtractNumbers));
+        ops['·']=Operator.binary((a,b)->binaryNumberOp(a,true,b,true,ItrLang::multiplyNumbers));//point-wise multiplication
+        ops['÷']=Operator.binary((a,b)->binaryNumberOp(a,true,b,true,ItrLang::realDivide));// point-wise (fractional) division
+        ops[':']=Operator.binary((a,b)->binaryNumberOp(a,true,b,true,ItrLang::intDivide));//integer division
+        ops['%']=Operator.binary((a,b)->binaryNumberOp(a,true,b,false,ItrLang::remainder));// remainder
+        ops['d']=Operator.of(itr->{//division and remainder
+            Value b = itr.popValue();
+            Value a = itr.popValue();
+            itr.pushValue(binaryNumberOp(a,true,b,false,ItrLang::remainder));
+            itr.pushValue(binaryNumberOp(a,true,b,true,ItrLang::intDivide));
+        });
+        ops['&']=Operator.binary((a,b)->binaryNumberOp(a,true,b,true,ItrLang::andNumbers));// bit-wise and
+        ops['|']=Operator.binary((a,b)->binaryNumberOp(a,false,b,false,ItrLang::orNumbers));// bit-wise or
+        ops['x']=Operator.binary((a,b)->binaryNumberOp(a,false,b,false,ItrLang::xorNumbers));// bit-wise xor
+        ops['>']=Operator.binary((a,b)->binaryNumberOp(a,false,b,false,(x,y)->Int.valueOf(compareNumbers(x,y)>0?1:0)));
+        ops['=']=Operator.binary((a,b)->binaryNumberOp(a,false,b,false,(x,y)->Int.valueOf(compareNumbers(x,y)==0?1:0)));
+        ops['<']=Operator.binary((a,b)->binaryNumberOp(a,false,b,false,(x,y)->Int.valueOf(compareNumbers(x,y)<0?1:0)));
+        ops['m']=Operator.binary((a,b)->binaryNumberOp(a,false,b,false,(x,y)->compareNumbers(x,y)<0?x:y));//minimum
+        ops['w']=Operator.binary((a,b)->binaryNumberOp(a,false,b,false,(x,y)->compareNumbers(x,y)>0?x:y));//maximum
+        ops['g']=Operator.binary((a,b)->binaryNumberOp(a,false,b,false,ItrLang::gcd));//gcd
+        ops['¬']=Operator.unary(a->unaryNumberOp(a,x->compareNumbers(x,Int.ZERO)==0?Int.ONE:Int.ZERO));
+        ops['¿']=Operator.unary(a->unaryNumberOp(a,x->compareNumbers(x,Int.ZERO)==0?Int.ZERO:Int.ONE));
+        ops['s']=Operator.unary(a->unaryNumberOp(a,x->{//sign
+            if(x.isReal()){
+                int c = compareNumbers(x, Int.ZERO);
+                return Int.valueOf(c > 0 ? 1 : c < 0 ? -1 : 0);
+            }
+            if(x instanceof Complex)
+                return realDivide(x,new Real(Complex.abs((Complex) x,mathContext)));
+            throw new Error("unsupported operand for 's': " + x.getClass().getName());
+        }));
+        ops['a']=Operator.unary(new UnaryOperator<>() {//absolute value/determinant
+            @Override
+            public Value apply(Value x) {
+                if (x instanceof Sequence)
+                    return MappedSequence.from((Sequence)x,this);
+                if (x.isReal())
+                    return compareNumbers((NumberValue) x, Int.ZERO) < 0 ? negate(x) : x;
+                if(x instanceof Complex)
+                    return new Real(Complex.abs((Complex) x,mathContext));
+                if (x instanceof Matrix)
+                    return ((Matrix) x).determinant();
+                throw new Error("unsupported operand for 'a': " + x.getClass().getName());
+            }
+        });
+        ops['~']=Operator.unary(ItrLang::negate);
+        ops['c']=Operator.unary(ItrLang::conjugate);
+        ops['¯']=Operator.unary(ItrLang::invert);
+        ops['º']=Operator.unary(a->range(a,true));
+        ops['¹']=Operator.unary(a->range(a,false));
+        ops['¨']=Operator.binary((a,b)->{
+            if (a.isNumber()||b.isNumber()) {
+                Complex A=((NumberValue)a).asComplex();
+                Complex B=((NumberValue)b).asComplex();
+                boolean reverseX=false,reverseY=false;
+                BigDecimal x0=BigMath.round(A.real(),mathContext),x1=BigMath.round(B.real(),mathContext),
+                        y0=BigMath.round(A.imaginary(),mathContext),y1=BigMath.round(B.imaginary(),mathContext);
+                // addLater? round away from center
+                if(x0.compareTo(x1)>0){
+                    reverseX=true;
+                }
+                if(y0.compareTo(y1)>0){
+                    reverseY=true;
+                }
+                Tuple r=new Tuple();
+                for(BigDecimal x=x0;reverseX?x.compareTo(x1)>=0:x.compareTo(x1)<=0;x=x.add(BigDecimal.valueOf(reverseX?-1:1))){
+                    for(BigDecimal y=y0;reverseY?y.compareTo(y1)>=0:y.compareTo(y1)<=0;y=y.add(BigDecimal.valueOf(reverseY?-1:1))){
+                        r.push(new Complex(x,y));
                     }
-                    //addLater handle index out of bounds
-                    Tuple elts=v.toSequence().asTuple();
-                    List<Value> head=elts.subList(0,elts.size()-n)
-                            ,tail=elts.subList(elts.size()-n,elts.size());
-                    pushValue(new Tuple(head.toArray(Value[]::new)));
-                    if(implicitIndex){
-                        if(tail.size()==1)
-                            pushValue(tail.get(0));
-                        break;
-                    }
-                    pushValue(new Tuple(tail.toArray(Value[]::new)));
-                }
-                case 'è' -> {
-                    int n=1;
-                    boolean implicitIndex=true;
-                    Value v=popValue();
-                    if(v.isNumber()){
-                        n=((NumberValue)v).asInt().intValueExact();
-                        implicitIndex=false;
-                        v=popValue();
-                    }
-                    Sequence elts=v.toSequence();
-                    Sequence head=elts.head(n),tail=elts.tail(n);
-                    pushValue(tail);
-                    if(implicitIndex){
-                        RandomAccessSequence raHead=head.asRASequence();
-                        if(raHead.hasIndex(BigInteger.ZERO))//size is equal to 1
-                            pushValue(raHead.get(0));
-                        break;
-                    }
-                    pushValue(head);
-                }
-                case 'ê' -> {
-                    int n=2;
-                    Value v=popValue();
-                    if(v.isNumber()){
-                        n=((NumberValue)v).asInt().intValueExact();
-                        v=popValue();
-                    }
-                    Tuple elts=v.toSequence().asTuple();
-                    boolean reverse=false;
-                    if(n<0){
-                        n=-n;
-                        reverse=true;
-                    }
-                    Tuple[] parts=new Tuple[n];
-                    for(int i=0;i<n;i++){
-                        int left=(int)Math.round((i*elts.size())/(double)n);
-                        int right=(int)Math.round(((i+1)*elts.size())/(double)n);
-                        parts[i]=new Tuple(elts.subList(left,right).toArray(Value[]::new));
-                    }
-                    if(reverse){
-                        for(int i=n-1;i>=0;i--){
-                            pushValue(parts[i]);
-                        }
-                    }else{
-                        for(int i=0;i<n;i++){
-                            pushValue(parts[i]);
-                        }
-                    }
-                }
-                case 'ë' -> {
-                    int n=2;
-                    Value v=popValue();
-                    if(v.isNumber()){
-                        n=((NumberValue)v).asInt().intValueExact();
-                        v=popValue();
-                    }
-                    Tuple elts=v.toSequence().asTuple();
-                    boolean reverse=false;
-                    if(n<0){
-                        n=-n;
-                        reverse=true;
-                    }
-                    Tuple[] parts=new Tuple[n];
-                    for(int i=0;i<n;i++){
-                        parts[i]=new Tuple();
-                    }
-                    for(int i=0;i<elts.size();i++){
-                        parts[i%n].push(elts.get(i));
-                    }
-                    if(reverse){
-                        for(int i=n-1;i>=0;i--){
-                            pushValue(parts[i]);
-                        }
-                    }else{
-                        for(int i=0;i<n;i++){
-                            pushValue(parts[i]);
-                        }
-                    }
-                }
-                case 'N' -> // N -> sequence of all integers
-                    pushValue(Integers.N);
-                case 'F' -> {//repeat ... times
-                    ArrayList<Integer> code = new ArrayList<>();
-                    ip = readItrArgs(sourceCode, ip, code);
-                    Value v = popValue();
-                    if(v instanceof NumberValue){
-                        BigInteger max=((NumberValue) v).asInt();
-                        for(BigInteger i=BigInteger.ZERO;i.compareTo(max)<0;i=i.add(BigInteger.ONE)){
-                            interpret(code);
-                        }
-                        continue;
-                    }
-                    // addLater? execute code ... times on copy of current stack for each element of matrix /tuple
-                    throw new UnsupportedOperationException("unsupported argument type for F: "+v.getClass().getName());
-                    // continue;
-                }
-                // TODO regular map operation
-                case 'µ' -> {//flat-map
-                    ArrayList<Integer> l = new ArrayList<>();
-                    ip = readItrArgs(sourceCode, ip, l);
-                    Sequence v = popValue().toSequence();
-                    iteratorOpFlatMap(v, l);
-                    // continue;
-                }
-                case 'R' -> {//reduce
-                    ArrayList<Integer> l = new ArrayList<>();
-                    ip = readItrArgs(sourceCode, ip, l);
-                    Sequence v = popValue().toSequence();
-                    openStack();
-                    iteratorOpReduce(v, l);
-                    closeStack();
-                    // continue;
-                }
-                case 'G' -> {//groups
-                    ArrayList<Integer> l = new ArrayList<>();
-                    ip = readItrArgs(sourceCode, ip, l);
-                    Sequence v = popValue().toSequence();
-                    iteratorOpGroups(v, l);
-                    // continue;
-                }
-                case 'M' -> {//stack-map
-                    ArrayList<Integer> l = new ArrayList<>();
-                    ip = readItrArgs(sourceCode, ip, l);
-                    Sequence v = popValue().toSequence();
-                    iteratorOpMapToStack(v, l);
-                    // continue;
-                }
-                case 'X' -> {//Cartesian product
-                    ArrayList<Integer> c = new ArrayList<>();
-                    ip = readItrArgs(sourceCode, ip, c);
-                    Sequence r = popValue().toSequence();
-                    Sequence l = popValue().toSequence();
-                    iteratorOpCauchy(l, r,false, c);
-                    // continue;
-                }
-                case 'Y' -> {//zip
-                    ArrayList<Integer> c = new ArrayList<>();
-                    ip = readItrArgs(sourceCode, ip, c);
-                    Sequence r = popValue().toSequence();
-                    Sequence l = popValue().toSequence();
-                    iteratorOpZip(l, r, c);
-                    // continue;
-                }
-                case 'C' -> {//cauchy-product
-                    ArrayList<Integer> c = new ArrayList<>();
-                    ip = readItrArgs(sourceCode, ip, c);
-                    Sequence r = popValue().toSequence();
-                    Sequence l = popValue().toSequence();
-                    iteratorOpCauchy(l, r,true, c);
-                    // continue;
-                }
-                case '¶' -> {// power set
-                    ArrayList<Integer> l = new ArrayList<>();
-                    ip = readItrArgs(sourceCode, ip, l);
-                    Sequence v = popValue().toSequence();
-                    iteratorOpSubsets(v, l);
-                    // continue;
-                }//break;
-                case 'S' -> {// sum
-                    Value v = popValue();
-                    if (v.isNumber()) {//skip conversion of number to array and calculate result directly
-                        //number is treated as if it were the 1-based range starting at that number
-                        NumberValue x = (NumberValue) v;
-                        if(x.isReal()&&compareNumbers(x,Int.ZERO)>=0){
-                            BigInteger i = x.asInt();
-                            pushValue(new Int(i.multiply(i.add(BigInteger.ONE)).divide(BigInteger.TWO)));
-                            continue;
-                        }
-                        Sequence l=v.toSequence();
-                        Value S = Int.ZERO;
-                        for (Value e: l)
-                            S = add(S, e);
-                        pushValue(S);
-                        continue;
-                    }
-                    v = v.toTuple();
-                    @SuppressWarnings("unchecked")
-                    Function<Tuple, Value>[] f = (Function<Tuple, Value>[]) new Function[1];
-                    f[0] = (t) -> {
-                        final Value[] res = new Value[]{Int.ZERO};
-                        t.forEach(e -> res[0] = binaryNumberOp(res[0],false,
-                                e instanceof Tuple ? f[0].apply((Tuple) e) : e,false,ItrLang::addNumbers));
-                        return res[0];
-                    };
-                    pushValue(f[0].apply((Tuple) v));
-                }
-                case 'P' -> {// product
-                    Value v = popValue();
-                    if (v.isNumber()) {//skip conversion of number to array and calculate result directly
-                        //number is treated as if it were the 1-based range starting at that number
-                        Sequence l=v.toSequence();
-                        Value P = Int.ONE;
-                        for (Value e: l)
-                            P = multiply(P, e);
-                        pushValue(P);
-                        continue;
-                    }
-                    v = v.toTuple();
-                    @SuppressWarnings("unchecked")
-                    Function<Tuple, Value>[] f = (Function<Tuple, Value>[]) new Function[1];
-                    f[0] = (t) -> {
-                        final Value[] res = new Value[]{Int.ONE};
-                        t.forEach(e -> res[0] = multiply(res[0], e instanceof Tuple ? f[0].apply((Tuple) e) : e));
-                        return res[0];
-                    };
-                    pushValue(f[0].apply((Tuple) v));
-                }
-                case 'Z' -> {//nonzero elements
-                    Tuple v=popValue().asTuple();
-                    Tuple res=new Tuple();
-                    for(Value e:v){
-                        if(e.asBool())
-                            res.push(e);
-                    }
-                    pushValue(res);
-                }
-                case 'Ì' -> {//indices of nonzero elements
-                    Tuple v = popValue().asTuple();
-                    Tuple res = new Tuple();
-                    for (int i = 0; i < v.size(); i++) if (v.get(i).asBool()) res.push(new Int(BigInteger.valueOf(i)));
-                    pushValue(res);
                 }
-                case 'Í' -> {//put nonzero element at indices given by vector
-                    Tuple v = popValue().asTuple();
-                    List<BigInteger> ints = v.stream().flatMap(ItrLang::flatten).map(NumberValue::asInt).toList();
-                    BigInteger M = ints.stream().reduce(BigInteger.ZERO, (m, e) -> e.compareTo(m) > 0 ? e : m);
-                    Tuple res = new Tuple();
-                    res.addAll(Collections.nCopies(M.intValueExact() + 1, Int.ZERO));
-                    ints.forEach(e -> {
-                        if (e.signum() >= 0) res.set(e.intValueExact(), Int.ONE);
-                    });
-                    pushValue(res);
-                }
-                case '@' -> {//replace number with corresponding element of vector
-                    Value I = popValue();
-                    final Value v = popValue();
-                    if (v.isNumber()) {//calculate result directly if v already is a number
-                        NumberValue x = (NumberValue) v;
-                        pushValue(unaryNumberOp(I, (e) -> {//number is treated as if it were the 1-based range starting at that number
-                            BigInteger i = e.asInt();
-                            return i.signum() >= 0 && compareNumbers(new Int(i), x) < 0 ? new Int(i.add(BigInteger.ONE)) : Int.ZERO;
-                        }));
-                        continue;
-                    }
-                    final RandomAccessSequence t = v.toSequence().asRASequence();// addLater? version that does not store all intermediate values
-                    pushValue(unaryNumberOp(I, (e) -> {
-                        BigInteger i = e.asInt();
-                        return t.hasIndex(i) ? t.get(i) : Int.ZERO;
-                    }));
-                }
-                case '®' -> {// vector to matrix
-                    Value v = popValue();
-                    if (v instanceof Tuple) {
-                        Tuple elts = new Tuple();
-                        ((Tuple) v).forEach(e -> elts.push(e.asTuple()));
-                        pushValue(new Matrix(elts));
-                        break;
-                    }
-                    if (v instanceof Matrix) {
-                        pushValue(((Matrix) v).rows);
+                return r;
+            }
+            // addLater ¨ for matrices and ranges
+            throw new Error("unsupported operands for ¨ : " + a.getClass().getName()+" and "+b.getClass().getName());
+        });
+        ops['L']=Operator.of(itr->{//length
+            Value a = itr.peekValue();
+            if (a instanceof Tuple)
+                itr.pushValue(Int.valueOf(((Tuple) a).size()));
+            else if (a instanceof Matrix)
+                itr.pushValue(Int.valueOf(((Matrix) a).nrows()));
+            else
+                itr.pushValue(Int.ONE);
+        });
+        ops['B']=Operator.unary(a->{ // bits
+            if(a.isNumber()){
+                BigInteger x=((NumberValue)a).asInt();
+                Tuple bits=new Tuple();
+                while(x.signum()!=0){
+                    bits.push(Int.valueOf(x.and(BigInteger.ONE)));
+                    if(x.equals(BigInteger.valueOf(-1)))
                         break;
+                    x=x.shiftRight(1);
+                }
+                return bits;
+            }
+            Stream<Value> t=a.toTuple().stream().flatMap(ItrLang::flatten);
+            BigInteger n=BigInteger.ZERO,mask=BigInteger.ONE;
+            for(Value e:(Iterable<Value>)t::iterator){
+                if(e.asBool())
+                    n=n.add(mask);
+                mask=mask.shiftRight(1);
+            }
+            return Int.valueOf(n);
+        });
+        ops['e']=Operator.unary(a->applyFunction(a,"exp"));// exponential
+        ops['n']=Operator.unary(a->applyFunction(a,"log"));// natural logarithm
+        ops['l']=Operator.binary((a,b)->divide_right(applyFunction(a,"log"),applyFunction(b,"log")));// logarithm
+        ops['r']=Operator.unary(a->applyFunction(a,"sqrt"));// square root
+        ops['æ']=(itr,program,ip)->{// functions page 0
+            itr.evaluateFunction(program.operand(ip),0);
+            return program.next(ip);
+        };
+        ops['Æ']=(itr,program,ip)->{// functions page 1
+            itr.evaluateFunction(program.operand(ip),1);
+            return program.next(ip);
+        };
+        ops['½']=Operator.unary(a->binaryNumberOp(a,true,Int.valueOf(2),true,ItrLang::realDivide));
+        ops['i']=ops['j']=ops['k']=Operator.unary(a->binaryNumberOp(a,true,Complex.I,true,ItrLang::multiply));
+        ops['²']=Operator.unary(a->multiply(a,a));
+        ops['³']=Operator.unary(a->multiply(a,multiply(a,a)));
+        ops['f']=Operator.unary(ItrLang::factorize);
+        // matrix operations
+        ops['*']=Operator.binary(ItrLang::multiply);
+        ops['/']=Operator.binary(ItrLang::divide_right);// right division A/B -> AB⁻¹
+        ops['\\']=Operator.binary(ItrLang::divide_left);// left division A\B -> A⁻¹B
+        ops['^']=Operator.binary(ItrLang::pow);
+        ops['T']=Operator.unary(ItrLang::transpose);
+        ops['H']=Operator.unary(a->transpose(conjugate(a)));
+
+        // vector operations
+        ops['¡']=Operator.unary(a->reverse(a.asTuple()));// TODO reverse rows and columns when reversing matrix
+        ops['°']=Operator.binary((a,b)->concatenate(a.asTuple(),b.asTuple()));
+        ops['×']=Operator.binary(ItrLang::repeat);
+        ops['é']=Operator.of(itr->{
+            int n=1;
+            boolean implicitIndex=true;
+            Value v=itr.popValue();
+            if(v.isNumber()){
+                n=((NumberValue)v).asInt().intValueExact();
+                implicitIndex=false;
+                v=itr.popValue();
+            }
+            //addLater handle index out of bounds
+            Tuple elts=v.toSequence().asTuple();
+            List<Value> head=elts.subList(0,elts.size()-n)
+                    ,tail=elts.subList(elts.size()-n,elts.size());
+            itr.pushValue(new Tuple(head.toArray(Value[]::new)));
+            if(implicitIndex){
+                if(tail.size()==1)
+                    itr.pushValue(tail.get(0));
+                return;
+            }
+            itr.pushValue(new Tuple(tail.toArray(Value[]::new)));
+        });
+        ops['è']=Operator.of(itr->{
+            int n=1;
+            boolean implicitIndex=true;
+            Value v=itr.popValue();
+            if(v.isNumber()){
+                n=((NumberValue)v).asInt().intValueExact();
+                implicitIndex=false;
+                v=itr.popValue();
+            }
+            Sequence elts=v.toSequence();
+            Sequence head=elts.head(n),tail=elts.tail(n);
+            itr.pushValue(tail);
+            if(implicitIndex){
+                RandomAccessSequence raHead=head.asRASequence();
+                if(raHead.hasIndex(BigInteger.ZERO))//size is equal to 1
+                    itr.pushValue(raHead.get(0));
+                return;
+            }
+            itr.pushValue(head);
+        });
+        ops['ê']=Operator.of(itr->{
+            int n=2;
+            Value v=itr.popValue();
+            if(v.isNumber()){
+                n=((NumberValue)v).asInt().intValueExact();
+                v=itr.popValue();
+            }
+            Tuple elts=v.toSequence().asTuple();
+            boolean reverse=false;
+            if(n<0){
+                n=-n;
+                reverse=true;
+            }
+            Tuple[] parts=new Tuple[n];
+            for(int i=0;i<n;i++){
+                int left=(int)Math.round((i*elts.size())/(double)n);
+                int right=(int)Math.round(((i+1)*elts.size())/(double)n);
+                parts[i]=new Tuple(elts.subList(left,right).toArray(Value[]::new));
+            }
+            pushParts(itr,parts,reverse);
+        });
+        ops['ë']=Operator.of(itr->{
+            int n=2;
+            Value v=itr.popValue();
+            if(v.isNumber()){
+                n=((NumberValue)v).asInt().intValueExact();
+                v=itr.popValue();
+            }
+            Tuple elts=v.toSequence().asTuple();
+            boolean reverse=false;
+            if(n<0){
+                n=-n;
+                reverse=true;
+            }
+            Tuple[] parts=new Tuple[n];
+            for(int i=0;i<n;i++){
+                parts[i]=new Tuple();
+            }
+            for(int i=0;i<elts.size();i++){
+                parts[i%n].push(elts.get(i));
+            }
+            pushParts(itr,parts,reverse);
+        });
+        ops['N']=Operator.of(itr->itr.pushValue(Integers.N));// N -> sequence of all integers
+        ops['F']=iteratorOperator((itr,body)->{//repeat ... times
+            Value v = itr.popValue();
+            if(v instanceof NumberValue){
+                BigInteger max=((NumberValue) v).asInt();
+                for(BigInteger i=BigInteger.ZERO;i.compareTo(max)<0;i=i.add(BigInteger.ONE)){
+                    itr.interpret(body);
+                }
+                return;
+            }
+            // addLater? execute code ... times on copy of current stack for each element of matrix /tuple
+            throw new UnsupportedOperationException("unsupported argument type for F: "+v.getClass().getName());
+        });
+        // TODO regular map operation
+        ops['µ']=iteratorOperator((itr,code)->itr.iteratorOpFlatMap(itr.popValue().toSequence(),code));//flat-map
+        ops['R']=iteratorOperator((itr,code)->{//reduce
+            Sequence v = itr.popValue().toSequence();
+            itr.openStack();
+            itr.iteratorOpReduce(v, code);
+            itr.closeStack();
+        });
+        ops['G']=iteratorOperator((itr,code)->itr.iteratorOpGroups(itr.popValue().toSequence(),code));//groups
+        ops['M']=iteratorOperator((itr,code)->itr.iteratorOpMapToStack(itr.popValue().toSequence(),code));//stack-map
+        ops['X']=iteratorOperator((itr,code)->{//Cartesian product
+            Sequence r = itr.popValue().toSequence();
+            Sequence l = itr.popValue().toSequence();
+            itr.iteratorOpCauchy(l, r,false, code);
+        });
+        ops['Y']=iteratorOperator((itr,code)->{//zip
+            Sequence r = itr.popValue().toSequence();
+            Sequence l = itr.popValue().toSequence();
+            itr.iteratorOpZip(l, r, code);
+        });
+        ops['C']=iteratorOperator((itr,code)->{//cauchy-product
+            Sequence r = itr.popValue().toSequence();
+            Sequence l = itr.popValue().toSequence();
+            itr.iteratorOpCauchy(l, r,true, code);
+        });
+        ops['¶']=iteratorOperator((itr,code)->itr.iteratorOpSubsets(itr.popValue().toSequence(),code));// power set
+        ops['S']=Operator.unary(new UnaryOperator<>() {// sum
+            @Override
+            public Value apply(Value v) {
+                if (v.isNumber()) {//skip conversion of number to array and calculate result directly
+                    //number is treated as if it were the 1-based range starting at that number
+                    NumberValue x = (NumberValue) v;
+                    if(x.isReal()&&compareNumbers(x,Int.ZERO)>=0){
+                        BigInteger i = x.asInt();
+                        return Int.valueOf(i.multiply(i.add(BigInteger.ONE)).divide(BigInteger.TWO));
                     }
-                    pushValue(v);
-                }
-                default -> {
-                }
+                    Value S = Int.ZERO;
+                    for (Value e: v.toSequence())
+                        S = add(S, e);
+                    return S;
+                }
+                return sum(v.toTuple());
+            }
+            private Value sum(Tuple t){
+                Value res = Int.ZERO;
+                for(Value e:t)
+                    res = binaryNumberOp(res,false,e instanceof Tuple ? sum((Tuple) e) : e,false,ItrLang::addNumbers);
+                return res;
+            }
+        });
+        ops['P']=Operator.unary(new UnaryOperator<>() {// product
+            @Override
+            public Value apply(Value v) {
+                if (v.isNumber()) {//skip conversion of number to array and calculate result directly
+                    //number is treated as if it were the 1-based range starting at that number
+                    Value P = Int.ONE;
+                    for (Value e: v.toSequence())
+                        P = multiply(P, e);
+                    return P;
+                }
+                return product(v.toTuple());
+            }
+            private Value product(Tuple t){
+                Value res = Int.ONE;
+                for(Value e:t)
+                    res = multiply(res, e instanceof Tuple ? product((Tuple) e) : e);
+                return res;
+            }
+        });
+        ops['Z']=Operator.unary(a->{//nonzero elements
+            Tuple res=new Tuple();
+            for(Value e:a.asTuple()){
+                if(e.asBool())
+                    res.push(e);
             }
-            // if there is ever code after the switch statement make sure to check all branches marked with continue
-        }
-        if(numberMode)
-            finishedNumber(fractionalDigits);
+            return res;
+        });
+        ops['Ì']=Operator.unary(a->{//indices of nonzero elements
+            Tuple v = a.asTuple();
+            Tuple res = new Tuple();
+            for (int i = 0; i < v.size(); i++) if (v.get(i).asBool()) res.push(Int.valueOf(i));
+            return res;
+        });
+        ops['Í']=Operator.unary(a->{//put nonzero element at indices given by vector
+            Tuple v = a.asTuple();
+            List<BigInteger> ints = v.stream().flatMap(ItrLang::flatten).map(NumberValue::asInt).toList();
+            BigInteger M = ints.stream().reduce(BigInteger.ZERO, (m, e) -> e.compareTo(m) > 0 ? e : m);
+            Tuple res = new Tuple();
+            res.addAll(Collections.nCopies(M.intValueExact() + 1, Int.ZERO));
+            ints.forEach(e -> {
+                if (e.signum() >= 0) res.set(e.intValueExact(), Int.ONE);
+            });
+            return res;
+        });
+        ops['@']=Operator.binary((v,I)->{//replace number with corresponding element of vector
+            if (v.isNumber()) {//calculate result directly if v already is a number
+                NumberValue x = (NumberValue) v;
+                return unaryNumberOp(I, (e) -> {//number is treated as if it were the 1-based range starting at that number
+                    BigInteger i = e.asInt();
+                    return i.signum() >= 0 && compareNumbers(Int.valueOf(i), x) < 0 ? Int.valueOf(i.add(BigInteger.ONE)) : Int.ZERO;
+                });
+            }
+            final RandomAccessSequence t = v.toSequence().asRASequence();// addLater? version that does not store all intermediate values
+            return unaryNumberOp(I, (e) -> {
+                BigInteger i = e.asInt();
+                return t.hasIndex(i) ? t.get(i) : Int.ZERO;
+            });
+        });
+        ops['®']=Operator.unary(v->{// vector to matrix
+            if (v instanceof Tuple) {
+                Tuple elts = new Tuple();
+                ((Tuple) v).forEach(e -> elts.push(e.asTuple()));
+                return new Matrix(elts);
+            }
+            if (v instanceof Matrix)
+                return ((Matrix) v).rows;
+            return v;
+        });
+        Operator[] internal=new Operator[Program.INTERNAL_OPCODES];
+        internal[-Program.FOLDED-1]=ConstantFolder::executeFolded;
+        internal[-Program.NIP-1]=(itr,program,ip)->{
+            if(!program.checkGuard(ip))
+                return ip;
+            Value b=itr.popValue();
+            itr.popValue();
+            itr.pushValue(b);
+            return program.next(ip);
+        };
+        internal[-Program.SQUARE-1]=(itr,program,ip)->{
+            if(!program.checkGuard(ip))
+                return ip;
+            Value a=itr.popValue();
+            itr.pushValue(multiply(a,a));
+            return program.next(ip);
+        };
+        internal[-Program.POINTWISE_SQUARE-1]=(itr,program,ip)->{
+            if(!program.checkGuard(ip))
+                return ip;
+            Value a=itr.popValue();
+            itr.pushValue(binaryNumberOp(a,true,a,true,ItrLang::multiplyNumbers));
+            return program.next(ip);
+        };
+        internal[-Program.OVER_ADD-1]=(itr,program,ip)->{
+            if(!program.checkGuard(ip))
+                return ip;
+            Value a=itr.popValue();
+            Value b=itr.peekValue();
+            itr.pushValue(add(a,b));
+            return program.next(ip);
+        };
+        internal[-Program.POWERS-1]=(itr,program,ip)->{
+            if(!program.checkGuard(ip))
+                return ip;
+            Program.Guard powers=program.guard(ip);
+            Value a=itr.popValue();
+            for(int i=0;i<powers.length();i++)
+                a=powers.symbol(i)=='²'?multiply(a,a):multiply(a,multiply(a,a));
+            itr.pushValue(a);
+            return program.next(ip);
+        };
+        return new OperatorTable(ops,internal);
     }
 
     public static String loadCode(File src,boolean utf8Mode) throws IOException {
@@ -2194,7 +2061,8 @@ public class ItrLang {
     void printDebugInfo(){
         System.out.println("\n---------------");
         System.out.println("stack:"+stack);
-        System.out.println("stackStack:"+stackStack);
+        System.out.println("stackStack:"+stack.enclosingFrames());
+        System.out.println("functionCache:"+functionCache);
     }
     public static void run(String code, List<Value> args, boolean debugMode) throws IOException {
         boolean explicitIn=false,explicitOut=false,stringMode=false;
@@ -2233,8 +2101,9 @@ public class ItrLang {
         }
         ItrLang program=new ItrLang();
         program.implicitInput=!explicitIn;
-        program.stack.addAll(args);
-        program.interpret(new ArrayList<>(code.codePoints().boxed().toList()));
+        for(Value v:args)
+            program.stack.push(v);
+        program.interpret(Program.compile(CodeBuffer.of(code)));
         if(!explicitOut){
             //TODO implicitly string detection
             System.out.println(program.stack.peekOrDefault(Int.ZERO));
@@ -2275,6 +2144,20 @@ public class ItrLang {
                 debugMode=true;
                 continue;
             }
+            if(!ignoreFlags&&args[i].equals("-p")){// precision of real numbers
+                int digits;
+                try{
+                    digits=i+1<args.length?Integer.parseInt(args[++i]):0;
+                }catch(NumberFormatException e){
+                    digits=0;
+                }
+                if(digits<=0){
+                    System.out.println("Invalid precision, please specify a positive number of digits: -p <digits>");
+                    return;
+                }
+                setPrecision(digits);
+                continue;
+            }
             progArgs.add(args[i]);
         }
         if(code==null){
@@ -2287,6 +2170,6 @@ public class ItrLang {
             System.out.print(binaryMode);
             // TODO translate source-code from/to binary and store in out
         }
-        ItrLang.run(code,progArgs.stream().map(s->parseValue(s.codePoints().boxed().toList())).toList(),debugMode||!hasSourceFile);
+        ItrLang.run(code,progArgs.stream().map(s->parseValue(CodeBuffer.of(s))).toList(),debugMode||!hasSourceFile);
     }
 }
\ No newline at end of file
@@ -6,6 +6,12 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 
 public interface NumberValue extends Value {
+    /**kinds of numbers ordered by generality: integers, fractions, reals and complex numbers*/
+    int INT=0,FRACTION=1,REAL=2,COMPLEX=3;
+    int KINDS=4;
+    /**kind of this number, used to select the implementation of arithmetic operations (see Arithmetic)*/
+    int kind();
+
     BigDecimal asReal();
 
     /**round to nearest integer*/
@@ -35,13 +41,13 @@ public interface NumberValue extends Value {
         @Override
         public Value get(BigInteger index) {
             if(index.signum()>=0&&index.compareTo(maxValue)<0)
-                return new Int(BigInteger.valueOf(sign).multiply(index.and(BigInteger.ONE)));
+                return Int.valueOf(BigInteger.valueOf(sign).multiply(index.and(BigInteger.ONE)));
             return Int.ZERO;
         }
         @Override
         public Value get(int i) {
             if(i>=0&&BigInteger.valueOf(i).compareTo(maxValue)<0)
-                return new Int(BigInteger.valueOf(sign*(i+1L)));
+                return Int.valueOf(sign*(i+1L));
             return Int.ZERO;
         }
         @Override
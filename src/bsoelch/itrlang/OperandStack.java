@@ -0,0 +1,116 @@
+package bsoelch.itrlang;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**operand stack of the interpreter.
+ * All values are stored in a single array, tuples opened with '(' are frames within that array marked by their start index.
+ * The values of a frame are only copied into a Tuple once the frame is closed*/
+final class OperandStack {
+    private Value[] values=new Value[16];
+    private int size;
+    /**start of the current frame*/
+    private int base;
+    /**starts of the enclosing frames*/
+    private int[] frames=new int[8];
+    private int frameCount;
+
+    /**number of values in the current frame*/
+    int size(){
+        return size-base;
+    }
+    boolean isEmpty(){
+        return size==base;
+    }
+    /**i-th value of the current frame*/
+    Value get(int i){
+        return values[base+i];
+    }
+    void push(Value v){
+        if(size==values.length)
+            values=Arrays.copyOf(values,2*values.length);
+        values[size++]=v;
+    }
+    Value pop(){
+        if(size==base)
+            throw new NoSuchElementException();
+        Value v=values[--size];
+        values[size]=null;
+        return v;
+    }
+    Value popOrDefault(Value defVal){
+        if(size==base)
+            return defVal;
+        Value v=values[--size];
+        values[size]=null;
+        return v;
+    }
+    Value peek(){
+        if(size==base)
+            throw new NoSuchElementException();
+        return values[size-1];
+    }
+    Value peekOrDefault(Value defVal){
+        return size==base?defVal:values[size-1];
+    }
+    /**removes all values and frames*/
+    void clear(){
+        Arrays.fill(values,0,size,null);
+        size=0;
+        base=0;
+        frameCount=0;
+    }
+
+    /**starts a new empty frame on top of the current frame*/
+    void openFrame(){
+        if(frameCount==frames.length)
+            frames=Arrays.copyOf(frames,2*frames.length);
+        frames[frameCount++]=base;
+        base=size;
+    }
+    /**removes and returns the values of the current frame starting at index start*/
+    Value[] removeFrom(int start){
+        Value[] removed=Arrays.copyOfRange(values,base+start,size);
+        Arrays.fill(values,base+start,size,null);
+        size=base+start;
+        return removed;
+    }
+    /**removes the current frame and returns its values, the enclosing frame becomes the current frame.
+     * If there is no enclosing frame the stack is empty afterwards*/
+    Value[] closeFrame(){
+        Value[] removed=removeFrom(0);
+        base=frameCount>0?frames[--frameCount]:0;
+        return removed;
+    }
+
+    /**values of the current frame*/
+    Value[] toArray(){
+        return Arrays.copyOfRange(values,base,size);
+    }
+    Tuple toTuple(){
+        return new Tuple(toArray());
+    }
+
+    private static void appendRange(StringBuilder sb,Value[] values,int from,int to){
+        sb.append("( ");
+        for(int i=from;i<to;i++)
+            sb.append(values[i]).append(' ');
+        sb.append(")");
+    }
+    /**the enclosing frames in the same format as toString()*/
+    String enclosingFrames(){
+        StringBuilder sb=new StringBuilder("( ");
+        for(int i=0;i<frameCount;i++){
+            appendRange(sb,values,frames[i],i+1<frameCount?frames[i+1]:base);
+            sb.append(' ');
+        }
+        return sb.append(")").toString();
+    }
+    /**the current frame in the format "( a b c )"*/
+    @Override
+    public String toString(){
+        StringBuilder sb=new StringBuilder();
+        appendRange(sb,values,base,size);
+        return sb.toString();
+    }
+}
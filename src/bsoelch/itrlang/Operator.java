@@ -0,0 +1,45 @@
+package bsoelch.itrlang;
+
+import java.io.IOException;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+
+/**handler for a single Itr instruction*/
+@FunctionalInterface
+interface Operator {
+    /**executes the instruction at position ip of program
+     * @return the position of the next instruction*/
+    int execute(ItrLang itr,Program program,int ip) throws IOException;
+
+    /**operation that only works on the stack and does not consume any operands from the code*/
+    @FunctionalInterface
+    interface StackOperation{
+        void apply(ItrLang itr) throws IOException;
+    }
+
+    /**operator that does nothing*/
+    Operator NOP=(itr,program,ip)->program.next(ip);
+
+    static Operator of(StackOperation op){
+        return (itr,program,ip)->{
+            op.apply(itr);
+            return program.next(ip);
+        };
+    }
+    /**operator replacing the top stack element with the result of f*/
+    static Operator unary(UnaryOperator<Value> f){
+        return (itr,program,ip)->{
+            itr.pushValue(f.apply(itr.popValue()));
+            return program.next(ip);
+        };
+    }
+    /**operator replacing the top two stack elements a b with the result of f(a,b)*/
+    static Operator binary(BinaryOperator<Value> f){
+        return (itr,program,ip)->{
+            Value b=itr.popValue();
+            Value a=itr.popValue();
+            itr.pushValue(f.apply(a,b));
+            return program.next(ip);
+        };
+    }
+}
@@ -0,0 +1,78 @@
+package bsoelch.itrlang;
+
+/**assigns an operator to every symbol.
+ * Tables are immutable, changing an operator creates a copy that shares all unchanged parts with the original,
+ * so keeping a snapshot of a table is free and an overwrite only copies the path to the changed symbol.
+ * Symbols below DIRECT_SYMBOLS are stored in blocks of BLOCK_SIZE operators,
+ * all other code-points are stored in a three level trie indexed by groups of TRIE_BITS bits*/
+final class OperatorTable {
+    static final int DIRECT_SYMBOLS=256;
+    private static final int BLOCK_BITS=6,BLOCK_SIZE=1<<BLOCK_BITS;
+    private static final int TRIE_BITS=7,TRIE_SIZE=1<<TRIE_BITS,TRIE_MASK=TRIE_SIZE-1;
+    private static final int MAX_SYMBOL=(1<<(3*TRIE_BITS))-1;
+
+    /**operators of internal instructions, internal opcode -i is stored at index i-1,
+     * internal instructions cannot be overwritten*/
+    private final Operator[] internal;
+    private final Operator[][] direct;
+    /**trie for symbols outside the direct range, missing nodes are null*/
+    private final Operator[][][] extended;
+
+    /**creates a table from the given operators, symbols without an operator are mapped to NOP*/
+    OperatorTable(Operator[] operators,Operator[] internal){
+        this.internal=internal;
+        direct=new Operator[DIRECT_SYMBOLS/BLOCK_SIZE][];
+        for(int b=0;b<direct.length;b++){
+            Operator[] block=new Operator[BLOCK_SIZE];
+            for(int i=0;i<BLOCK_SIZE;i++){
+                int symbol=b*BLOCK_SIZE+i;
+                block[i]=symbol<operators.length&&operators[symbol]!=null?operators[symbol]:Operator.NOP;
+            }
+            direct[b]=block;
+        }
+        extended=new Operator[TRIE_SIZE][][];
+    }
+    private OperatorTable(Operator[] internal,Operator[][] direct,Operator[][][] extended){
+        this.internal=internal;
+        this.direct=direct;
+        this.extended=extended;
+    }
+
+    Operator get(int symbol){
+        if(symbol>=0&&symbol<DIRECT_SYMBOLS)
+            return direct[symbol>>>BLOCK_BITS][symbol&(BLOCK_SIZE-1)];
+        if(symbol<0)
+            return -symbol<=internal.length?internal[-symbol-1]:Operator.NOP;
+        if(symbol>MAX_SYMBOL)
+            return Operator.NOP;
+        Operator[][] node=extended[symbol>>>(2*TRIE_BITS)];
+        if(node==null)
+            return Operator.NOP;
+        Operator[] leaf=node[(symbol>>>TRIE_BITS)&TRIE_MASK];
+        if(leaf==null)
+            return Operator.NOP;
+        Operator op=leaf[symbol&TRIE_MASK];
+        return op==null?Operator.NOP:op;
+    }
+    /**copy of this table with the operator for symbol replaced by op*/
+    OperatorTable with(int symbol,Operator op){
+        if(symbol>=0&&symbol<DIRECT_SYMBOLS){
+            Operator[][] newDirect=direct.clone();
+            Operator[] block=newDirect[symbol>>>BLOCK_BITS].clone();
+            block[symbol&(BLOCK_SIZE-1)]=op;
+            newDirect[symbol>>>BLOCK_BITS]=block;
+            return new OperatorTable(internal,newDirect,extended);
+        }
+        if(symbol<0||symbol>MAX_SYMBOL)
+            throw new IllegalArgumentException("invalid symbol: "+symbol);
+        Operator[][][] newExtended=extended.clone();
+        Operator[][] node=newExtended[symbol>>>(2*TRIE_BITS)];
+        node=node==null?new Operator[TRIE_SIZE][]:node.clone();
+        newExtended[symbol>>>(2*TRIE_BITS)]=node;
+        Operator[] leaf=node[(symbol>>>TRIE_BITS)&TRIE_MASK];
+        leaf=leaf==null?new Operator[TRIE_SIZE]:leaf.clone();
+        node[(symbol>>>TRIE_BITS)&TRIE_MASK]=leaf;
+        leaf[symbol&TRIE_MASK]=op;
+        return new OperatorTable(internal,direct,newExtended);
+    }
+}
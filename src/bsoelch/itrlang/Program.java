@@ -0,0 +1,334 @@
+package bsoelch.itrlang;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**Itr code decoded into a flat instruction array.
+ * The instruction starting at source position i is stored at offset i*INSTRUCTION_SIZE,
+ * each instruction consists of the opcode (the code-point at that position), an operand and the position of the next instruction*/
+final class Program {
+    static final int INSTRUCTION_SIZE=3;
+    static final int OPCODE=0,OPERAND=1,NEXT=2;
+    /**opcode of positions that have not been decoded yet*/
+    private static final int UNDECODED=-1;
+    /**flag in the operand of '$' marking an overwrite that is called automatically*/
+    static final int AUTO_CALL=1<<30;
+    /**internal instructions replacing a sequence of instructions (internal opcodes are negative):
+     * FOLDED pushes precomputed values (see ConstantFolder), the remaining instructions fuse common operator sequences:
+     * NIP `àå`, SQUARE `ä*`, POINTWISE_SQUARE `ä·`, OVER_ADD `á+` and POWERS chains of `²` and `³`*/
+    static final int FOLDED=-1,NIP=-2,SQUARE=-3,POINTWISE_SQUARE=-4,OVER_ADD=-5,POWERS=-6;
+    static final int INTERNAL_OPCODES=6;
+    /**operand of block delimiters ('?','!','[',']') that have not been matched yet*/
+    static final int NO_TARGET=-1;
+
+    final CodeBuffer source;
+    /**decoded instructions*/
+    private final int[] code;
+    private final ArrayList<Value> constants=new ArrayList<>();
+    final ArrayList<Guard> guards=new ArrayList<>();
+
+    /**replacement of the instructions starting at a position,
+     * it is only valid as long as the operators of the replaced symbols are the ones the replacement was created for*/
+    static final class Guard{
+        /**symbols of the replaced instructions and their expected operators*/
+        private final int[] symbols;
+        private final Operator[] expected;
+        /**values pushed by FOLDED instructions*/
+        final Value[] values;
+        /**original instruction at the replaced position*/
+        private final int opcode,operand,next;
+        /**last operator table for which the replacement was checked to be valid*/
+        private OperatorTable validFor;
+
+        private Guard(int[] symbols,Operator[] expected,Value[] values,int opcode,int operand,int next){
+            this.symbols=symbols;
+            this.expected=expected;
+            this.values=values;
+            this.opcode=opcode;
+            this.operand=operand;
+            this.next=next;
+        }
+        /**symbols of the replaced instructions*/
+        int symbol(int i){
+            return symbols[i];
+        }
+        int length(){
+            return symbols.length;
+        }
+        private boolean isValid(OperatorTable operators){
+            if(operators==validFor)
+                return true;
+            for(int i=0;i<symbols.length;i++){
+                if(operators.get(symbols[i])!=expected[i])
+                    return false;
+            }
+            validFor=operators;
+            return true;
+        }
+    }
+
+    /**arguments of an iterator operation
+     * @param code compiled argument code
+     * @param next position of the instruction after the arguments
+     * @param symbol first non-iterator symbol of the arguments
+     * @param overwriteState overwrite state of symbol at the time the arguments were parsed*/
+    record IteratorArgs(Program code, int next, int symbol, int overwriteState){}
+    /**parsed iterator arguments indexed by the position of their first character*/
+    private IteratorArgs[] iteratorArgs;
+
+    private Program(CodeBuffer source){
+        this.source=source;
+        code=new int[source.size()*INSTRUCTION_SIZE];
+        Arrays.fill(code,UNDECODED);
+    }
+    static Program compile(CodeBuffer source){
+        Program program=new Program(source);
+        program.entryPoint(0);
+        ConstantFolder.fold(program,ItrLang.BUILTIN_OPERATORS);
+        program.fuseInstructions();
+        return program;
+    }
+
+    /**maximum number of programs in the cache of code values compiled at runtime*/
+    private static final int CODE_CACHE_SIZE=256;
+    /**recently compiled code values by their source, executing the same code again reuses its decoded instructions*/
+    private static final LinkedHashMap<CodeBuffer,Program> compiledCode=new LinkedHashMap<>(16,0.75f,true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CodeBuffer,Program> eldest){
+            return size()>CODE_CACHE_SIZE;
+        }
+    };
+    /**compiled program for code created at runtime, source must not be modified afterwards*/
+    static Program compileCached(CodeBuffer source){
+        return compiledCode.computeIfAbsent(source,Program::compile);
+    }
+
+    /**replaces the instruction at pos with an internal instruction that continues at next
+     * @param symbols symbols of the replaced instructions, the instruction is only valid while these symbols have their builtin meaning*/
+    void replaceGuarded(int pos,int opcode,int next,int[] symbols,Value[] values){
+        Operator[] expected=new Operator[symbols.length];
+        for(int i=0;i<symbols.length;i++)
+            expected[i]=ItrLang.BUILTIN_OPERATORS.get(symbols[i]);
+        guards.add(new Guard(symbols,expected,values,opcode(pos),operand(pos),next(pos)));
+        replace(pos,opcode,guards.size()-1,next);
+    }
+    Guard guard(int pos){
+        return guards.get(operand(pos));
+    }
+    /**checks if the internal instruction at pos is valid for the current operators,
+     * if it is not valid the original instruction is restored*/
+    boolean checkGuard(int pos){
+        Guard guard=guard(pos);
+        if(guard.isValid(ItrLang.operators))
+            return true;
+        replace(pos,guard.opcode,guard.operand,guard.next);
+        return false;
+    }
+
+    private static boolean isPower(int op){
+        return op=='²'||op=='³';
+    }
+    /**replaces common sequences of two or more operators with a single internal instruction*/
+    private void fuseInstructions(){
+        int ip=0;
+        while(ip>=0&&ip<size()){
+            int first=opcode(ip),second=next(ip);
+            if(first<0||second>=size()){
+                ip=second;
+                continue;
+            }
+            int fused=switch (first){
+                case 'à' -> opcode(second)=='å'?NIP:0;
+                case 'ä' -> opcode(second)=='*'?SQUARE:opcode(second)=='·'?POINTWISE_SQUARE:0;
+                case 'á' -> opcode(second)=='+'?OVER_ADD:0;
+                default -> 0;
+            };
+            if(fused!=0){
+                replaceGuarded(ip,fused,next(second),new int[]{first,opcode(second)},null);
+            }else if(isPower(first)&&isPower(opcode(second))){
+                int end=second,count=1;
+                while(end<size()&&isPower(opcode(end))){
+                    end=next(end);
+                    count++;
+                }
+                int[] symbols=new int[count];
+                for(int i=0,p=ip;i<count;i++,p=next(p))
+                    symbols[i]=opcode(p);
+                replaceGuarded(ip,POWERS,end,symbols,null);
+            }
+            ip=next(ip);
+        }
+    }
+
+    int size(){
+        return source.size();
+    }
+    int opcode(int pos){
+        return code[pos*INSTRUCTION_SIZE+OPCODE];
+    }
+    int operand(int pos){
+        return code[pos*INSTRUCTION_SIZE+OPERAND];
+    }
+    int next(int pos){
+        return code[pos*INSTRUCTION_SIZE+NEXT];
+    }
+    /**replaces the instruction at pos*/
+    void replace(int pos,int opcode,int operand,int next){
+        int offset=pos*INSTRUCTION_SIZE;
+        code[offset+OPCODE]=opcode;
+        code[offset+OPERAND]=operand;
+        code[offset+NEXT]=next;
+    }
+    private int charAt(int pos){
+        return ItrLang.readInstruction(source,pos);
+    }
+    /**value of the constant with the given index,
+     * tuples are copied on every access since some operations modify their arguments in place*/
+    Value constant(int index){
+        return copy(constants.get(index));
+    }
+    /**copy of v that does not share any tuples with v, numbers are immutable and are not copied*/
+    static Value copy(Value v){
+        if(!(v instanceof Tuple t))
+            return v;
+        Value[] elements=new Value[t.size()];
+        for(int i=0;i<elements.length;i++)
+            elements[i]=copy(t.get(i));
+        return t instanceof ItrLang.StackRow?new ItrLang.StackRow(elements):new Tuple(elements);
+    }
+    private int addConstant(Value v){
+        constants.add(v);
+        return constants.size()-1;
+    }
+
+    /**makes sure all instructions reachable from the given position are decoded
+     * (positions within literals are only decoded when execution jumps directly to them)
+     * @return the given position*/
+    int entryPoint(int pos){
+        int ip=pos;
+        boolean hasBlocks=false;
+        while(ip>=0&&ip<size()&&code[ip*INSTRUCTION_SIZE]==UNDECODED){
+            decode(ip);
+            hasBlocks|=isBlockStart(code[ip*INSTRUCTION_SIZE])||isBlockEnd(code[ip*INSTRUCTION_SIZE]);
+            ip=code[ip*INSTRUCTION_SIZE+NEXT];
+        }
+        if(hasBlocks)
+            matchBlocks(pos);
+        return pos;
+    }
+    private static boolean isBlockStart(int op){
+        return op=='?'||op=='!';
+    }
+    private static boolean isBlockEnd(int op){
+        return op=='['||op==']';
+    }
+    /**resolves the jump targets of all unmatched block delimiters reachable from pos:
+     * the operand of '?' and '!' is the position after the matching '[' or ']' (the end of the code if there is none),
+     * the operand of ']' is the position of the matching '?' or '!'.
+     * Delimiters that already have a target keep it*/
+    private void matchBlocks(int pos){
+        ArrayDeque<Integer> open=new ArrayDeque<>();
+        for(int ip=pos;ip>=0&&ip<size();ip=code[ip*INSTRUCTION_SIZE+NEXT]){
+            int op=code[ip*INSTRUCTION_SIZE];
+            if(isBlockStart(op)){
+                open.push(ip);
+            }else if(isBlockEnd(op)&&!open.isEmpty()){
+                int start=open.pop();
+                if(code[start*INSTRUCTION_SIZE+OPERAND]==NO_TARGET)
+                    code[start*INSTRUCTION_SIZE+OPERAND]=code[ip*INSTRUCTION_SIZE+NEXT];
+                if(code[ip*INSTRUCTION_SIZE+OPERAND]==NO_TARGET)
+                    code[ip*INSTRUCTION_SIZE+OPERAND]=start;
+            }
+        }
+        while(!open.isEmpty()){
+            int start=open.pop();
+            if(code[start*INSTRUCTION_SIZE+OPERAND]==NO_TARGET)
+                code[start*INSTRUCTION_SIZE+OPERAND]=size();
+        }
+    }
+
+    /**arguments of the iterator operation directly before pos,
+     * the arguments are only parsed again if the overwrite state of their first symbol changed*/
+    IteratorArgs iteratorArgs(int pos){
+        if(iteratorArgs==null)
+            iteratorArgs=new IteratorArgs[size()+1];
+        IteratorArgs args=pos<iteratorArgs.length?iteratorArgs[pos]:null;
+        if(args!=null&&ItrLang.overwriteState(args.symbol)==args.overwriteState)
+            return args;
+        int symbolPos=pos;
+        while(ItrLang.contains(ItrLang.iteratorOps,charAt(symbolPos)))
+            symbolPos++;
+        int symbol=charAt(symbolPos);
+        CodeBuffer argString=new CodeBuffer();
+        int next=entryPoint(ItrLang.readItrArgs(source,pos,argString));
+        args=new IteratorArgs(compile(argString),next,symbol,ItrLang.overwriteState(symbol));
+        if(pos<iteratorArgs.length)
+            iteratorArgs[pos]=args;
+        return args;
+    }
+
+    private void decode(int pos){
+        int op=charAt(pos);
+        int operand=0,next=pos+1;
+        switch (op){
+            case '\'' -> {// char literal
+                operand=addConstant(Int.valueOf(charAt(next++)));
+            }
+            case '"' -> {// string literal
+                CodeBuffer str=new CodeBuffer();
+                str.add('"');
+                while(next<size()){
+                    int c=charAt(next++);
+                    str.add(c);
+                    if(c=='"')
+                        break;
+                    if(c=='\\')
+                        str.add(charAt(next++));
+                }
+                operand=addConstant(ItrLang.parseValue(str));
+            }
+            case '»' -> {// code literal
+                Tuple str=new Tuple();
+                int level=1;
+                while(next<size()){
+                    int c=charAt(next++);
+                    if(c=='«'){
+                        level--;
+                        if(level==0)//TODO don't exit code-string literal within string or char literal
+                            break;
+                    }else if(c=='»'){
+                        level++;
+                    }
+                    str.add(Int.valueOf(c));
+                }
+                operand=addConstant(str);
+            }
+            case ';' -> {// comment
+                while(next<size()&&charAt(next)!='\n')
+                    next++;
+            }
+            case '$' -> {// overwrite character
+                int symbol=charAt(next);
+                if(symbol=='©'){
+                    symbol=charAt(++next);
+                    operand=AUTO_CALL;
+                }
+                if(ItrLang.contains(ItrLang.overwriteBlacklist,symbol)){
+                    operand=-1;
+                }else{
+                    operand|=symbol;
+                    next++;//consume next character
+                }
+            }
+            case 'æ','Æ' -> // function with name given by next character
+                    operand=charAt(next++);
+            case '?','!','[',']' -> // jump targets are resolved once the code reachable from pos is decoded
+                    operand=NO_TARGET;
+        }
+        replace(pos,op,operand,next);
+    }
+}
@@ -3,9 +3,97 @@ package bsoelch.itrlang;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
-public record Real(BigDecimal value) implements NumberValue {
+/**real number stored as BigDecimal with the precision of ItrLang.mathContext.
+ * Each value has a lazily computed double approximation with a relative error of at most RELATIVE_ERROR,
+ * operations with an integer or boolean result (comparisons, rounding, flooring) use the approximation
+ * if its error bound decides the result and only fall back to BigDecimal arithmetic otherwise*/
+public final class Real implements NumberValue {
+    /**upper bound for the relative error of approximation()*/
+    static final double RELATIVE_ERROR=0x1p-48;
+    /**smallest magnitude of a non-zero approximation, smaller values may lose precision as subnormal doubles*/
+    private static final double MIN_APPROXIMATION=0x1p-900;
+
+    private final BigDecimal value;
+    private double approximation;
+    private boolean hasApproximation;
+
+    public Real(BigDecimal value){
+        this.value=value;
+    }
+
+    public BigDecimal value(){
+        return value;
+    }
+
+    /**double with a relative distance of at most RELATIVE_ERROR to the value of this number,
+     * NaN if the value is out of the range that can be approximated*/
+    double approximation(){
+        if(!hasApproximation){
+            approximation=approximate(value);
+            hasApproximation=true;
+        }
+        return approximation;
+    }
+    /**approximation of x, NaN if there is no approximation with the required error bound*/
+    static double approximation(NumberValue x){
+        if(x instanceof Real r)
+            return r.approximation();
+        if(x instanceof Int i&&i.isSmall()&&Math.abs(i.longValue())<=1L<<53)
+            return i.longValue();
+        return Double.NaN;
+    }
+    private static double approximate(BigDecimal x){
+        if(x.signum()==0)
+            return 0;
+        int scale=x.scale();
+        if(Math.abs(scale)>300)
+            return Double.NaN;
+        // the leading 62 bits of the unscaled value, the truncation error is below 2^-61
+        BigInteger unscaled=x.unscaledValue();
+        int shift=Math.max(unscaled.bitLength()-62,0);
+        if(shift>600)
+            return Double.NaN;
+        double d=Math.scalb((double)unscaled.shiftRight(shift).longValue(),shift);
+        // powers of ten up to 10^22 are exact doubles, Math.pow is within one ulp for larger exponents
+        double p=Math.pow(10,Math.abs(scale));
+        d=scale>0?d/p:d*p;
+        return Double.isFinite(d)&&Math.abs(d)>=MIN_APPROXIMATION?d:Double.NaN;
+    }
+
+    /**compares two real numbers, at least one of them has to be a Real*/
+    static int compare(NumberValue a,NumberValue b){
+        double x=approximation(a),y=approximation(b);
+        // comparisons with NaN are false, so missing approximations fall through to the exact comparison
+        double bound=2*RELATIVE_ERROR*(Math.abs(x)+Math.abs(y));
+        if(x-y>bound)
+            return 1;
+        if(y-x>bound)
+            return -1;
+        return a.asReal().compareTo(b.asReal());
+    }
+    /**floor of the quotient of two real numbers rounded to ItrLang.mathContext, the divisor has to be non-zero*/
+    static Int floorDivide(NumberValue a,NumberValue b){
+        double q=approximation(a)/approximation(b);
+        if(Math.abs(q)<0x1p52){
+            // if there is no integer in the error interval rounding the quotient cannot change its floor
+            double bound=4*RELATIVE_ERROR*Math.abs(q);
+            double low=Math.floor(q-bound);
+            if(low==Math.floor(q+bound))
+                return Int.valueOf((long)low);
+        }
+        return Int.valueOf(BigMath.floor(a.asReal().divide(b.asReal(),ItrLang.mathContext),ItrLang.mathContext).toBigInteger());
+    }
+
     @Override
     public BigInteger asInt() {
+        double x=approximation();
+        if(Math.abs(x)<0x1p52){
+            // rint rounds half to even like ItrLang.mathContext
+            double bound=2*RELATIVE_ERROR*Math.abs(x);
+            double low=Math.rint(x-bound);
+            if(low==Math.rint(x+bound))
+                return BigInteger.valueOf((long)low);
+        }
         return BigMath.round(value,ItrLang.mathContext).toBigInteger();
     }
 
@@ -24,6 +112,10 @@ public record Real(BigDecimal value) implements NumberValue {
         return value.signum() != 0;
     }
 
+    @Override
+    public int kind() {
+        return REAL;
+    }
     @Override
     public boolean isInt() {
         return false;
@@ -41,4 +133,16 @@ public record Real(BigDecimal value) implements NumberValue {
     public String toString() {
         return value.toString();
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Real real)) return false;
+        return value.equals(real.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
 }
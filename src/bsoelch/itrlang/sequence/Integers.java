@@ -11,11 +11,11 @@ public class Integers implements RandomAccessSequence {
     private Integers(){}
     @Override
     public Value get(int index) {
-        return new Int(BigInteger.valueOf(index));
+        return Int.valueOf(index);
     }
     @Override
     public Value get(BigInteger index) {
-        return new Int(index);
+        return Int.valueOf(index);
     }
     @Override
     public int size() {